@@ -0,0 +1,29 @@
+package com.thacbao.neki.configurations;
+
+import com.thacbao.neki.security.RouteClassifier.RouteType;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sampled request log on the "access" logger. Only a fraction of requests is written
+ * (app.access-log.sample-rate); set the logger to DEBUG to record every request.
+ */
+@Component
+@Slf4j(topic = "access")
+public class AccessLog {
+
+    @Value("${app.access-log.sample-rate:0.01}")
+    private double sampleRate;
+
+    public void record(HttpServletRequest request, RouteType route) {
+        if (log.isDebugEnabled()) {
+            log.debug("{} {} [{}]", request.getMethod(), request.getRequestURI(), route);
+        } else if (sampleRate > 0 && log.isInfoEnabled() && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            log.info("{} {} [{}]", request.getMethod(), request.getRequestURI(), route);
+        }
+    }
+}
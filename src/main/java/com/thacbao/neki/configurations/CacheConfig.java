@@ -0,0 +1,102 @@
+package com.thacbao.neki.configurations;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.thacbao.neki.events.CatalogCacheBroadcaster;
+import com.thacbao.neki.events.CatalogReferenceChangedEvent;
+import com.thacbao.neki.events.PrincipalEvictedEvent;
+import com.thacbao.neki.events.ProductChangeBroadcaster;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * In-process Caffeine caches for catalog reference data and authenticated principals. Every cache is bounded, expires
+ * after write and records stats, which actuator exposes as cache.gets / cache.evictions metrics.
+ */
+@Configuration
+@EnableCaching
+@Slf4j
+public class CacheConfig {
+
+    public static final String BRANDS = "brands";
+    public static final String COLORS = "colors";
+    public static final String SIZES = "sizes";
+    public static final String CATEGORIES = "categories";
+    public static final String SUB_CATEGORIES = "subCategories";
+    public static final String TOPICS = "topics";
+    public static final String COLLECTIONS = "collections";
+
+    public static final List<String> CATALOG_REFERENCE_CACHES =
+            List.of(BRANDS, COLORS, SIZES, CATEGORIES, SUB_CATEGORIES, TOPICS, COLLECTIONS);
+
+    // UserPrincipal by email, in front of CustomUserDetailsService
+    public static final String PRINCIPALS = "principals";
+
+    @Value("${app.cache.catalog.max-size:10000}")
+    private long catalogMaxSize;
+
+    @Value("${app.cache.catalog.ttl:PT30M}")
+    private Duration catalogTtl;
+
+    @Value("${app.cache.principals.max-size:10000}")
+    private long principalsMaxSize;
+
+    // Short: without a broadcaster, other nodes only see an eviction when their entry expires
+    @Value("${app.cache.principals.ttl:PT5M}")
+    private Duration principalsTtl;
+
+    @Bean
+    public CacheManager cacheManager() {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        // Only the caches registered here exist, a typo in a cache name fails fast
+        cacheManager.setCacheNames(List.of());
+        for (String name : CATALOG_REFERENCE_CACHES) {
+            cacheManager.registerCustomCache(name, Caffeine.newBuilder()
+                    .maximumSize(catalogMaxSize)
+                    .expireAfterWrite(catalogTtl)
+                    .recordStats()
+                    .build());
+        }
+        cacheManager.registerCustomCache(PRINCIPALS, Caffeine.newBuilder()
+                .maximumSize(principalsMaxSize)
+                .expireAfterWrite(principalsTtl)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+
+    /**
+     * Single-node default: nothing to tell other nodes. When running several instances, declare
+     * a @Primary CatalogCacheBroadcaster that publishes to a shared channel.
+     */
+    @Bean
+    public CatalogCacheBroadcaster catalogCacheBroadcaster() {
+        return new CatalogCacheBroadcaster() {
+            @Override
+            public void broadcast(CatalogReferenceChangedEvent event) {
+                log.debug("Catalog cache invalidation not broadcast: {}", event);
+            }
+
+            @Override
+            public void broadcast(PrincipalEvictedEvent event) {
+                log.debug("Principal eviction not broadcast: {}", event.email());
+            }
+        };
+    }
+
+    /**
+     * Single-node default for the product facet index. Without a @Primary ProductChangeBroadcaster,
+     * other nodes only see a change at their next scheduled index rebuild.
+     */
+    @Bean
+    public ProductChangeBroadcaster productChangeBroadcaster() {
+        return event -> log.debug("Product change not broadcast: {}", event.productIds());
+    }
+}
@@ -1,15 +1,22 @@
 package com.thacbao.neki.configurations;
 
+import com.thacbao.neki.events.CatalogCacheBroadcaster;
+import com.thacbao.neki.events.PrincipalEvictedEvent;
 import com.thacbao.neki.repositories.UserRepository;
 import com.thacbao.neki.model.User;
 import com.thacbao.neki.security.UserPrincipal;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 
 @Service
 @RequiredArgsConstructor
@@ -17,7 +24,12 @@ import org.springframework.stereotype.Service;
 public class CustomUserDetailsService implements UserDetailsService {
 
     private final UserRepository userRepository;
+    private final CacheManager cacheManager;
+    private final CatalogCacheBroadcaster cacheBroadcaster;
+    private final ApplicationEventPublisher eventPublisher;
+
     @Override
+    @Cacheable(cacheNames = CacheConfig.PRINCIPALS, key = "#email")
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
         log.debug("Loading user by username: {}", email);
         User user = userRepository.findByEmail(email)
@@ -26,6 +38,42 @@ public class CustomUserDetailsService implements UserDetailsService {
         return UserPrincipal.create(user);
     }
 
+    /**
+     * Uncached lookup for password login and token refresh, which must see the current
+     * password hash and active flag even if another node's eviction has not arrived
+     */
+    public UserDetails loadFreshUserByUsername(String email) throws UsernameNotFoundException {
+        User user = userRepository.findByEmail(email)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + email));
+
+        return UserPrincipal.create(user);
+    }
+
+    /**
+     * Drop the cached principal on every node once the current transaction commits, so a
+     * concurrent request cannot cache the old row again before the change is visible
+     */
+    public void evictPrincipal(String email) {
+        eventPublisher.publishEvent(new PrincipalEvictedEvent(email, false));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalEvicted(PrincipalEvictedEvent event) {
+        Cache cache = cacheManager.getCache(CacheConfig.PRINCIPALS);
+        if (cache != null) {
+            cache.evict(event.email());
+        }
+
+        if (!event.remote()) {
+            try {
+                cacheBroadcaster.broadcast(event);
+            } catch (Exception e) {
+                // Other nodes fall back to the cache TTL
+                log.error("Failed to broadcast principal eviction of {}: {}", event.email(), e.getMessage());
+            }
+        }
+    }
+
     @Transactional()
     public User loadUserEntityByEmail(String email) {
         return userRepository.findByEmail(email)
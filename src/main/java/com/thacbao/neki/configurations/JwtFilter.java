@@ -1,23 +1,28 @@
 package com.thacbao.neki.configurations;
 
+import com.thacbao.neki.security.RouteClassifier;
+import com.thacbao.neki.security.RouteClassifier.RouteType;
 import com.thacbao.neki.security.UserPrincipal;
-import io.jsonwebtoken.Claims;
+import com.thacbao.neki.security.VerifiedClaims;
+import com.thacbao.neki.services.TokenDenylist;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.List;
+import java.util.Optional;
 
 @Component
 @RequiredArgsConstructor
@@ -26,39 +31,33 @@ public class JwtFilter extends OncePerRequestFilter {
 
     private final CustomUserDetailsService userDetailsService;
     private final JwtUtils jwtUtils;
-    Claims claims = null;
-    String email = null;
-    private static final String[] PUBLIC_PATHS = {
-            "/api/v1/auth/login",
-            "/api/v1/auth/signup",
-            "/api/v1/auth/forgot-password",
-            "/api/v1/auth/verify-account",
-            "/api/v1/auth/regenerate-otp",
-            "/api/v1/auth/test",
-            "/api/v1/auth/set-password.*",
-            "/api/v1/auth/verify-forgot-password",
-            "/oauth2/callback.*"
-    };
+    private final TokenDenylist tokenDenylist;
+    private final RouteClassifier routeClassifier;
+    private final AccessLog accessLog;
 
-    private Boolean isPublicPath(String path){
-        return Arrays.stream(PUBLIC_PATHS).anyMatch(path::matches);
-    }
+    // Build the principal from signed claims instead of loading the user on every request
+    @Value("${app.security.stateless-auth.enabled:false}")
+    private boolean statelessAuth;
+
+    // Claims of the accepted token, kept on the request rather than on this shared filter
+    public static final String VERIFIED_CLAIMS_ATTRIBUTE = JwtFilter.class.getName() + ".claims";
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
-        String path = request.getRequestURI();
-        log.info(path);
-        if (isPublicPath(request.getServletPath())){
+        RouteType route = routeClassifier.classify(request.getServletPath());
+        accessLog.record(request, route);
+        if (route == RouteType.PUBLIC){
             filterChain.doFilter(request, response);
         }
-        else if (path.equals("/api/v1/auth/refresh-token")){
+        else if (route == RouteType.REFRESH_TOKEN){
             String authHeader = request.getHeader("Authorization");
             if (authHeader != null && authHeader.startsWith("Bearer ")) {
                 String token = authHeader.substring(7);
-                String username = jwtUtils.getUserNameFromTokenExpired(token);
+                String username = jwtUtils.verifyAllowExpired(token).subject();
                 if (username != null) {
                     log.info("refresh token : {}", username);
-                    UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                    // Uncached, a blocked account must not refresh on a node with a stale principal
+                    UserDetails userDetails = userDetailsService.loadFreshUserByUsername(username);
 
                     UsernamePasswordAuthenticationToken authentication = new
                             UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
@@ -70,56 +69,90 @@ public class JwtFilter extends OncePerRequestFilter {
         }
         else{
             String authorizationHeader = request.getHeader("Authorization");
-            String token = null;
+            VerifiedClaims claims = null;
             if (authorizationHeader != null){
                 if(authorizationHeader.startsWith("Bearer ")){
-                    token = authorizationHeader.substring(7);
+                    String token = authorizationHeader.substring(7);
                     try {
-                        claims = jwtUtils.getClaimsFromToken(token);
-                        email = jwtUtils.getUsernameFromToken(token);
+                        claims = jwtUtils.verify(token);
                     } catch (Exception e) {
                         log.error("Invalid JWT token: {}", e.getMessage());
                     }
                 }
             }
-            if(claims != null && email != null && SecurityContextHolder.getContext().getAuthentication() == null){
-                UserDetails userDetails = userDetailsService.loadUserByUsername(email);
+            // Password reset and other typed tokens are never accepted as access tokens
+            if (claims != null && claims.type() != null && !claims.isAccessToken()) {
+                log.debug("Rejected {} token used as access token", claims.type());
+                claims = null;
+            }
+            // Tokens issued before stateless mode lack the claims it needs and take the user lookup
+            if(claims != null && claims.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null
+                    && statelessAuth && claims.isAccessToken() && claims.userId() != null && claims.emailVerified() != null){
+                if (tokenDenylist.isRevoked(claims)) {
+                    log.debug("Rejected revoked token of user {}", claims.userId());
+                } else if (!claims.emailVerified()) {
+                    writeUnverified(response);
+                    return;
+                } else {
+                    UserPrincipal userPrincipal = UserPrincipal.create(claims);
+                    UsernamePasswordAuthenticationToken authentication = new
+                            UsernamePasswordAuthenticationToken(userPrincipal, null, userPrincipal.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                    request.setAttribute(VERIFIED_CLAIMS_ATTRIBUTE, claims);
+                }
+            }
+            else if(claims != null && claims.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null){
+                UserDetails userDetails = userDetailsService.loadUserByUsername(claims.subject());
 
                 if (userDetails instanceof UserPrincipal userPrincipal) {
                     // Check if email is not verified
                     if (!userPrincipal.getEmailVerified()) {
-                        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
-                        response.setContentType("application/json");
-                        response.getWriter().write(
-                                "{\"message\":\"Please verify your email first\",\"status\":\"UNVERIFIED\"}"
-                        );
+                        writeUnverified(response);
                         return;
                     }
                 }
-                if(jwtUtils.validateToken(token, userDetails)){
+                if(jwtUtils.validateToken(claims, userDetails)){
                     UsernamePasswordAuthenticationToken authentication = new
                             UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                     authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authentication);
+                    request.setAttribute(VERIFIED_CLAIMS_ATTRIBUTE, claims);
                 }
             }
             filterChain.doFilter(request, response);
         }
     }
 
+    private void writeUnverified(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_FORBIDDEN);
+        response.setContentType("application/json");
+        response.getWriter().write(
+                "{\"message\":\"Please verify your email first\",\"status\":\"UNVERIFIED\"}"
+        );
+    }
+
+    /**
+     * Claims of the token accepted for the request bound to the calling thread, if any.
+     * Read through RequestContextHolder, so it works on any thread that serves the request.
+     */
+    public static Optional<VerifiedClaims> currentClaims() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable((VerifiedClaims) attributes.getAttribute(VERIFIED_CLAIMS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST));
+    }
+
     public Boolean isAdmin(){
-        if (claims == null) return false;
-        List<String> roles = claims.get("role", List.class);
-        return roles.contains("admin".toUpperCase());
+        return currentClaims().map(claims -> claims.hasRole("admin")).orElse(false);
     }
 
     public Boolean isUser(){
-        if (claims == null) return false;
-        List<String> roles = claims.get("role", List.class);
-        return roles.contains("user".toUpperCase());
+        return currentClaims().map(claims -> claims.hasRole("user")).orElse(false);
     }
 
     public String getCurrentUsername(){
-        return email;
+        return currentClaims().map(VerifiedClaims::subject).orElse(null);
     }
 }
@@ -1,13 +1,18 @@
 package com.thacbao.neki.configurations;
 
+import com.thacbao.neki.security.UserPrincipal;
+import com.thacbao.neki.security.VerifiedClaims;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import io.jsonwebtoken.security.Keys;
 import javax.crypto.SecretKey;
+import java.time.Duration;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -18,8 +23,42 @@ public class JwtUtils {
     @Value("${jwt.secretKey}")
     private String secret;
 
+    @Value("${jwt.accessToken.expirationHours:24}")
+    private int accessTokenExpirationHours;
+
+    // Built once; both are immutable and safe to share between request threads
+    private SecretKey signingKey;
+    private JwtParser parser;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes());
+        parser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+    }
+
+    public Duration getAccessTokenTtl() {
+        return Duration.ofHours(accessTokenExpirationHours);
+    }
+
     private SecretKey getSigningKey(){
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        return signingKey;
+    }
+
+    /**
+     * Check the signature and expiry of a token and read its claims, in a single parse.
+     * Throws a JwtException when the token is invalid or expired.
+     */
+    public VerifiedClaims verify(String token) {
+        return VerifiedClaims.from(parser.parseSignedClaims(token).getPayload());
+    }
+
+    /**
+     * Same as verify but accepts an expired token, for the refresh flow
+     */
+    public VerifiedClaims verifyAllowExpired(String token) {
+        return VerifiedClaims.from(getClaimsFromToKenExpired(token));
     }
 
     public String generateToken(String email, Map<String, Object> claims) {
@@ -36,26 +75,18 @@ public class JwtUtils {
                 .claims(claims)
                 .subject(email)
                 .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 24))
+                .expiration(new Date(System.currentTimeMillis() + getAccessTokenTtl().toMillis()))
                 .signWith(getSigningKey())
                 .compact();
     }
 
     public Claims getClaimsFromToken(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return parser.parseSignedClaims(token).getPayload();
     }
 
     public Claims getClaimsFromToKenExpired(String token){
         try{
-            return Jwts.parser()
-                    .verifyWith(getSigningKey())
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return parser.parseSignedClaims(token).getPayload();
         }
         catch (ExpiredJwtException ex){
             return ex.getClaims();
@@ -85,6 +116,19 @@ public class JwtUtils {
     }
 
     public Boolean validateToken(String token, org.springframework.security.core.userdetails.UserDetails userDetails){
-        return !isTokenExpired(token) && userDetails.getUsername().equals(getUsernameFromToken(token));
+        return validateToken(verify(token), userDetails);
+    }
+
+    public Boolean validateToken(VerifiedClaims claims, org.springframework.security.core.userdetails.UserDetails userDetails){
+        return !claims.isExpired() && userDetails.getUsername().equals(claims.subject())
+                && !isRevokedEpoch(claims, userDetails);
+    }
+
+    // Tokens minted before the user's last bulk revocation carry an older epoch
+    private boolean isRevokedEpoch(VerifiedClaims claims, org.springframework.security.core.userdetails.UserDetails userDetails) {
+        return claims.tokenEpoch() != null
+                && userDetails instanceof UserPrincipal principal
+                && principal.getTokenEpoch() != null
+                && claims.tokenEpoch() < principal.getTokenEpoch();
     }
 }
@@ -1,5 +1,6 @@
 package com.thacbao.neki.configurations;
 
+import com.thacbao.neki.security.RouteClassifier;
 import com.thacbao.neki.security.handler.OAuth2AuthenticationFailureHandler;
 import com.thacbao.neki.security.handler.OAuth2AuthenticationSuccessHandler;
 import lombok.RequiredArgsConstructor;
@@ -13,7 +14,6 @@ import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
@@ -28,24 +28,16 @@ public class SecurityConfig {
     private final CustomOAuth2UserService customOAuth2UserService;
     private final OAuth2AuthenticationFailureHandler oAuth2AuthenticationFailureHandler;
     private final OAuth2AuthenticationSuccessHandler oAuth2AuthenticationSuccessHandler;
-
-    private static final String[] PUBLIC_MATCHERS = {
-            "/api/v1/auth/login",
-            "/api/v1/auth/signup",
-            "/api/v1/auth/forgot-password",
-            "/api/v1/auth/verify-account",
-            "/api/v1/auth/regenerate-otp",
-            "/api/v1/auth/test",
-            "/api/v1/auth/set-password/**",
-            "/api/v1/auth/verify-forgot-password",
-    };
+    private final RouteClassifier routeClassifier;
+    // BCrypt on a bounded pool, see BoundedPasswordEncoder
+    private final PasswordEncoder passwordEncoder;
 
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http.sessionManagement(session ->
                 session.sessionCreationPolicy(SessionCreationPolicy.STATELESS)).csrf(AbstractHttpConfigurer::disable)
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers(PUBLIC_MATCHERS).permitAll()
+                        .requestMatchers(request -> routeClassifier.isPublic(request.getServletPath())).permitAll()
                         .requestMatchers("/oauth2/**").permitAll()
                         .anyRequest().authenticated())
                 .oauth2Login(oauth2 -> oauth2
@@ -67,11 +59,6 @@ public class SecurityConfig {
         return http.build();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
-    }
-
     @Bean
     public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
         return authenticationConfiguration.getAuthenticationManager();
@@ -80,8 +67,9 @@ public class SecurityConfig {
     @Bean
     public AuthenticationProvider authenticationProvider() {
         DaoAuthenticationProvider authProvider = new DaoAuthenticationProvider();
-        authProvider.setUserDetailsService(userDetailsService);
-        authProvider.setPasswordEncoder(passwordEncoder());
+        // Password checks bypass the principal cache
+        authProvider.setUserDetailsService(userDetailsService::loadFreshUserByUsername);
+        authProvider.setPasswordEncoder(passwordEncoder);
         return authProvider;
     }
 }
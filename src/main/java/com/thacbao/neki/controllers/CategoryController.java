@@ -0,0 +1,25 @@
+package com.thacbao.neki.controllers;
+
+import com.thacbao.neki.services.CategoryService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/categories")
+@RequiredArgsConstructor
+public class CategoryController {
+
+    private final CategoryService categoryService;
+
+    // Pre-serialized response, written as is
+    @GetMapping("/hierarchy")
+    public ResponseEntity<byte[]> getHierarchy() {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(categoryService.getCategoryHierarchyJson());
+    }
+}
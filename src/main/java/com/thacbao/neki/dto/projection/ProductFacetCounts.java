@@ -0,0 +1,26 @@
+package com.thacbao.neki.dto.projection;
+
+import com.thacbao.neki.model.Product;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Product counts per facet value for one filter, plus its price range.
+ * Maps are keyed by brand, collection, topic, color and size id.
+ */
+@Value
+@Builder
+public class ProductFacetCounts {
+    long total;
+    Map<Integer, Long> brands;
+    Map<Integer, Long> collections;
+    Map<Integer, Long> topics;
+    Map<Integer, Long> colors;
+    Map<Integer, Long> sizes;
+    Map<Product.Gender, Long> genders;
+    BigDecimal minPrice;
+    BigDecimal maxPrice;
+}
@@ -0,0 +1,76 @@
+package com.thacbao.neki.dto.projection;
+
+import com.thacbao.neki.model.Product;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Everything the in-memory facet index needs to know about one active product:
+ * the filterable ids and flags plus the columns listings sort on
+ */
+@Value
+@Builder(toBuilder = true)
+public class ProductFacetDocument {
+    Integer id;
+    Integer categoryId;
+    Integer subCategoryId;
+    String subCategoryPath;
+    Integer brandId;
+    Product.Gender gender;
+
+    BigDecimal basePrice;
+    BigDecimal salePrice;
+
+    Boolean isFeatured;
+    Boolean isNew;
+    // Any variant with quantity - reserved > 0, same rule as the inStock filter
+    boolean inStock;
+
+    Set<Integer> collectionIds;
+    Set<Integer> topicIds;
+    Set<Integer> colorIds;
+    Set<Integer> sizeIds;
+
+    // Sort columns
+    String name;
+    Integer totalSold;
+    Long viewCount;
+    BigDecimal averageRating;
+    LocalDateTime createdAt;
+
+    /**
+     * The product's sub-category and all its ancestors, read from the materialized path
+     */
+    public List<Integer> getSubCategoryAncestry() {
+        if (subCategoryPath == null) {
+            return subCategoryId != null ? List.of(subCategoryId) : List.of();
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (String segment : subCategoryPath.split("/")) {
+            if (!segment.isEmpty()) {
+                ids.add(Integer.valueOf(segment));
+            }
+        }
+        return ids;
+    }
+
+    public boolean hasSalePrice() {
+        return salePrice != null && salePrice.compareTo(BigDecimal.ZERO) != 0;
+    }
+
+    public BigDecimal getCurrentPrice() {
+        return salePrice != null && salePrice.compareTo(BigDecimal.ZERO) > 0
+                ? salePrice : basePrice;
+    }
+
+    public boolean isOnSale() {
+        return salePrice != null && salePrice.compareTo(BigDecimal.ZERO) > 0
+                && salePrice.compareTo(basePrice) < 0;
+    }
+}
@@ -0,0 +1,12 @@
+package com.thacbao.neki.dto.projection;
+
+/**
+ * Rating sum and review count of one product
+ */
+public interface ProductRatingAggregate {
+    Integer getProductId();
+
+    Long getRatingSum();
+
+    Long getReviewCount();
+}
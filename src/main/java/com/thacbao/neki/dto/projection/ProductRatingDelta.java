@@ -0,0 +1,15 @@
+package com.thacbao.neki.dto.projection;
+
+/**
+ * Pending change to a product's rating sum and review count
+ */
+public record ProductRatingDelta(long ratingSum, int reviewCount) {
+
+    public ProductRatingDelta plus(ProductRatingDelta other) {
+        return new ProductRatingDelta(ratingSum + other.ratingSum, reviewCount + other.reviewCount);
+    }
+
+    public boolean isZero() {
+        return ratingSum == 0 && reviewCount == 0;
+    }
+}
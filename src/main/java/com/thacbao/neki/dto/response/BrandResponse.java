@@ -10,7 +10,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -20,6 +20,8 @@ public class BrandResponse {
     private String description;
     private Boolean isActive;
     private LocalDateTime createdAt;
+    // Matching products, only set in filter options
+    private Long productCount;
 
     public static BrandResponse from(Brand brand) {
         return BrandResponse.builder()
@@ -30,4 +32,9 @@ public class BrandResponse {
                 .createdAt(brand.getCreatedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Copy with the count of matching products, leaving this instance (possibly a cache entry) untouched
+    public BrandResponse withProductCount(Long productCount) {
+        return toBuilder().productCount(productCount).build();
+    }
+}
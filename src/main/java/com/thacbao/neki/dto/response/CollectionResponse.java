@@ -12,7 +12,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -26,6 +26,8 @@ public class CollectionResponse {
     private Boolean isActive;
     private Set<Integer> subCategoryIds;
     private LocalDateTime createdAt;
+    // Matching products, only set in filter options
+    private Long productCount;
 
     public static CollectionResponse from(Collection collection) {
         return CollectionResponse.builder()
@@ -37,9 +39,14 @@ public class CollectionResponse {
                 .subCategoryIds(collection.getSubCategories() != null
                         ? collection.getSubCategories().stream()
                         .map(SubCategory::getId)
-                        .collect(Collectors.toSet())
+                        .collect(Collectors.toUnmodifiableSet())
                         : Set.of())
                 .createdAt(collection.getCreatedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Copy with the count of matching products, leaving this instance (possibly a cache entry) untouched
+    public CollectionResponse withProductCount(Long productCount) {
+        return toBuilder().productCount(productCount).build();
+    }
+}
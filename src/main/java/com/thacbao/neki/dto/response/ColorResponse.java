@@ -6,7 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -14,6 +14,8 @@ public class ColorResponse {
     private Integer id;
     private String name;
     private String hexCode;
+    // Matching products, only set in filter options
+    private Long productCount;
 
     public static ColorResponse from(Color color) {
         return ColorResponse.builder()
@@ -22,4 +24,9 @@ public class ColorResponse {
                 .hexCode(color.getHexCode())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Copy with the count of matching products, leaving this instance (possibly a cache entry) untouched
+    public ColorResponse withProductCount(Long productCount) {
+        return toBuilder().productCount(productCount).build();
+    }
+}
@@ -0,0 +1,32 @@
+package com.thacbao.neki.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private Integer size;
+    private Boolean hasNext;
+    // Pass back as-is to get the next page, null on the last page
+    private String nextCursor;
+
+    public <R> CursorPageResponse<R> map(Function<? super T, ? extends R> converter) {
+        return CursorPageResponse.<R>builder()
+                .content(content.stream().<R>map(converter).toList())
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+}
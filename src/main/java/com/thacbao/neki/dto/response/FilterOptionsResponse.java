@@ -1,5 +1,6 @@
 package com.thacbao.neki.dto.response;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.thacbao.neki.model.Product;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -8,6 +9,7 @@ import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -21,6 +23,8 @@ public class FilterOptionsResponse {
     private List<TopicResponse> topics;
     private List<ColorResponse> colors;
     private List<SizeResponse> sizes;
+    private Map<Product.Gender, Long> genders;
+    private Long totalProducts;
     private BigDecimal minPrice;
     private BigDecimal maxPrice;
 }
@@ -0,0 +1,21 @@
+package com.thacbao.neki.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome of one file in a batch upload: url on success, error otherwise
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ImageUploadResult {
+    private String fileName;
+    private Boolean success;
+    private String url;
+    private String error;
+    private Long durationMs;
+}
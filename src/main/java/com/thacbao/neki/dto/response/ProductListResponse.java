@@ -2,6 +2,7 @@ package com.thacbao.neki.dto.response;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.thacbao.neki.model.Product;
 import com.thacbao.neki.model.ProductImage;
+import com.thacbao.neki.model.ProductListing;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -39,13 +40,31 @@ public class ProductListResponse {
     private List<String> availableColors;
 
     public static ProductListResponse from(Product product) {
+        return from(product, getPrimaryImage(product), hasStock(product), getAvailableColors(product));
+    }
+
+    /**
+     * Build from a product whose images and variants were loaded separately (batched by page),
+     * so no lazy collection of the product is touched
+     */
+    public static ProductListResponse from(Product product, String primaryImage, Boolean inStock,
+                                           List<String> availableColors) {
+        return from(product, SubCategoryResponse.from(product.getSubCategory()), BrandResponse.from(product.getBrand()),
+                primaryImage, inStock, availableColors);
+    }
+
+    /**
+     * Same, with sub-category and brand taken from the reference cache instead of the product's associations
+     */
+    public static ProductListResponse from(Product product, SubCategoryResponse subCategory, BrandResponse brand,
+                                           String primaryImage, Boolean inStock, List<String> availableColors) {
         return ProductListResponse.builder()
                 .id(product.getId())
                 .name(product.getName())
                 .slug(product.getSlug())
-                .categoryName(product.getSubCategory().getCategory().getName())
-                .subCategoryName(product.getSubCategory().getName())
-                .brandName(product.getBrand().getName())
+                .categoryName(subCategory.getCategoryName())
+                .subCategoryName(subCategory.getName())
+                .brandName(brand.getName())
                 .basePrice(product.getBasePrice())
                 .salePrice(product.getSalePrice())
                 .currentPrice(product.getCurrentPrice())
@@ -54,12 +73,37 @@ public class ProductListResponse {
                 .gender(product.getGender().getValue())
                 .isFeatured(product.getIsFeatured())
                 .isNew(product.getIsNew())
-                .primaryImage(getPrimaryImage(product))
+                .primaryImage(primaryImage)
                 .averageRating(product.getAverageRating())
                 .reviewCount(product.getReviewCount())
                 .totalSold(product.getTotalSold())
-                .inStock(hasStock(product))
-                .availableColors(getAvailableColors(product))
+                .inStock(inStock)
+                .availableColors(availableColors)
+                .build();
+    }
+
+    public static ProductListResponse from(ProductListing listing) {
+        return ProductListResponse.builder()
+                .id(listing.getId())
+                .name(listing.getName())
+                .slug(listing.getSlug())
+                .categoryName(listing.getCategoryName())
+                .subCategoryName(listing.getSubCategoryName())
+                .brandName(listing.getBrandName())
+                .basePrice(listing.getBasePrice())
+                .salePrice(listing.getSalePrice())
+                .currentPrice(listing.getCurrentPrice())
+                .discountPercentage(listing.getDiscountPercentage())
+                .isOnSale(listing.getIsOnSale())
+                .gender(listing.getGender() != null ? listing.getGender().getValue() : null)
+                .isFeatured(listing.getIsFeatured())
+                .isNew(listing.getIsNew())
+                .primaryImage(listing.getPrimaryImage())
+                .averageRating(listing.getAverageRating())
+                .reviewCount(listing.getReviewCount())
+                .totalSold(listing.getTotalSold())
+                .inStock(listing.getInStock())
+                .availableColors(listing.getAvailableColors())
                 .build();
     }
 
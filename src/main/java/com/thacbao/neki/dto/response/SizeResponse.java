@@ -6,7 +6,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -15,6 +15,8 @@ public class SizeResponse {
     private String name;
     private String categoryType;
     private Integer displayOrder;
+    // Matching products, only set in filter options
+    private Long productCount;
 
     public static SizeResponse from(Size size) {
         return SizeResponse.builder()
@@ -24,4 +26,9 @@ public class SizeResponse {
                 .displayOrder(size.getDisplayOrder())
                 .build();
     }
+
+    // Copy with the count of matching products, leaving this instance (possibly a cache entry) untouched
+    public SizeResponse withProductCount(Long productCount) {
+        return toBuilder().productCount(productCount).build();
+    }
 }
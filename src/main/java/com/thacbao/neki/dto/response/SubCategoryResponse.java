@@ -13,7 +13,7 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -22,6 +22,7 @@ public class SubCategoryResponse {
     private Integer categoryId;
     private String categoryName;
     private Integer parentId;
+    private String path;
     private String name;
     private String slug;
     private String description;
@@ -38,6 +39,7 @@ public class SubCategoryResponse {
                 .categoryId(subCategory.getCategory().getId())
                 .categoryName(subCategory.getCategory().getName())
                 .parentId(subCategory.getParent() != null ? subCategory.getParent().getId() : null)
+                .path(subCategory.getPath())
                 .name(subCategory.getName())
                 .slug(subCategory.getSlug())
                 .description(subCategory.getDescription())
@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -20,6 +20,8 @@ public class TopicResponse {
     private String description;
     private Boolean isActive;
     private LocalDateTime createdAt;
+    // Matching products, only set in filter options
+    private Long productCount;
 
     public static TopicResponse from(Topic topic) {
         return TopicResponse.builder()
@@ -31,4 +33,9 @@ public class TopicResponse {
                 .createdAt(topic.getCreatedAt())
                 .build();
     }
-}
\ No newline at end of file
+
+    // Copy with the count of matching products, leaving this instance (possibly a cache entry) untouched
+    public TopicResponse withProductCount(Long productCount) {
+        return toBuilder().productCount(productCount).build();
+    }
+}
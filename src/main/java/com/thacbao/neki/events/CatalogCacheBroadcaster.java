@@ -0,0 +1,13 @@
+package com.thacbao.neki.events;
+
+/**
+ * Hook for invalidating catalog and principal caches on other nodes. An implementation sends local
+ * changes to its peers (Redis pub/sub, a message broker, ...) and republishes what it receives as the
+ * same event with remote = true. The default does nothing, for single-node setups.
+ */
+public interface CatalogCacheBroadcaster {
+
+    void broadcast(CatalogReferenceChangedEvent event);
+
+    void broadcast(PrincipalEvictedEvent event);
+}
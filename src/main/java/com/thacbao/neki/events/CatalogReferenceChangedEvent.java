@@ -0,0 +1,9 @@
+package com.thacbao.neki.events;
+
+/**
+ * A catalog reference entity (brand, color, size, category, sub-category, topic, collection)
+ * was written. Published after commit; remote events come from other nodes through
+ * CatalogCacheBroadcaster and are not broadcast again.
+ */
+public record CatalogReferenceChangedEvent(String cacheName, Integer id, boolean remote) {
+}
@@ -0,0 +1,99 @@
+package com.thacbao.neki.events;
+
+import com.thacbao.neki.configurations.CacheConfig;
+import com.thacbao.neki.model.*;
+import com.thacbao.neki.model.base.BaseEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * JPA entity listener for catalog reference entities. Publishes one CatalogReferenceChangedEvent
+ * per written entity after commit, so caches are evicted precisely and never for a rollback.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogReferenceListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        String cacheName = cacheNameOf(entity);
+        Integer id = entity instanceof BaseEntity base ? base.getId() : null;
+        if (cacheName == null || id == null) {
+            return;
+        }
+
+        CatalogReferenceChangedEvent event = new CatalogReferenceChangedEvent(cacheName, id, false);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(event);
+            return;
+        }
+
+        ChangedReferences changed = (ChangedReferences) TransactionSynchronizationManager.getResource(this);
+        if (changed == null) {
+            changed = new ChangedReferences();
+            TransactionSynchronizationManager.bindResource(this, changed);
+            TransactionSynchronizationManager.registerSynchronization(changed);
+        }
+        changed.events.add(event);
+    }
+
+    private String cacheNameOf(Object entity) {
+        if (entity instanceof Brand) {
+            return CacheConfig.BRANDS;
+        }
+        if (entity instanceof Color) {
+            return CacheConfig.COLORS;
+        }
+        if (entity instanceof Size) {
+            return CacheConfig.SIZES;
+        }
+        if (entity instanceof Category) {
+            return CacheConfig.CATEGORIES;
+        }
+        if (entity instanceof SubCategory) {
+            return CacheConfig.SUB_CATEGORIES;
+        }
+        if (entity instanceof Topic) {
+            return CacheConfig.TOPICS;
+        }
+        if (entity instanceof Collection) {
+            return CacheConfig.COLLECTIONS;
+        }
+        return null;
+    }
+
+    private class ChangedReferences implements TransactionSynchronization {
+
+        private final Set<CatalogReferenceChangedEvent> events = new LinkedHashSet<>();
+
+        // Evict before other after-commit work (read model, facet index) reloads reference data
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+
+        @Override
+        public void afterCommit() {
+            events.forEach(eventPublisher::publishEvent);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CatalogReferenceListener.this);
+        }
+    }
+}
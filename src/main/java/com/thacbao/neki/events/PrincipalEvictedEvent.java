@@ -0,0 +1,9 @@
+package com.thacbao.neki.events;
+
+/**
+ * The cached principal of a user is stale (password, active flag, roles or token epoch changed).
+ * Published by CustomUserDetailsService; remote events come from other nodes through
+ * CatalogCacheBroadcaster and are not broadcast again.
+ */
+public record PrincipalEvictedEvent(String email, boolean remote) {
+}
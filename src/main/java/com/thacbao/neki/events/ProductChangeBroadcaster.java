@@ -0,0 +1,11 @@
+package com.thacbao.neki.events;
+
+/**
+ * Hook for keeping in-memory product indexes of other nodes current. An implementation sends
+ * local changes to its peers and republishes what it receives as a ProductChangedEvent with
+ * remote = true. The default does nothing, for single-node setups.
+ */
+public interface ProductChangeBroadcaster {
+
+    void broadcast(ProductChangedEvent event);
+}
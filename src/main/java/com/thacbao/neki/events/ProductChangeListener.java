@@ -0,0 +1,46 @@
+package com.thacbao.neki.events;
+
+import com.thacbao.neki.model.Inventory;
+import com.thacbao.neki.model.Product;
+import com.thacbao.neki.model.ProductImage;
+import com.thacbao.neki.model.ProductVariant;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * JPA entity listener for everything a product listing is derived from.
+ * Hibernate resolves it through Spring, so it is a regular bean.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductChangeListener {
+
+    private final ProductChangeTracker changeTracker;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        changeTracker.markChanged(resolveProductId(entity));
+    }
+
+    private Integer resolveProductId(Object entity) {
+        if (entity instanceof Product product) {
+            return product.getId();
+        }
+        if (entity instanceof ProductVariant variant) {
+            return variant.getProduct() != null ? variant.getProduct().getId() : null;
+        }
+        if (entity instanceof ProductImage image) {
+            return image.getProduct() != null ? image.getProduct().getId() : null;
+        }
+        if (entity instanceof Inventory inventory) {
+            ProductVariant variant = inventory.getVariant();
+            return variant != null && variant.getProduct() != null ? variant.getProduct().getId() : null;
+        }
+        return null;
+    }
+}
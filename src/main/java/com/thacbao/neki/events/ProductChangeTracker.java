@@ -0,0 +1,58 @@
+package com.thacbao.neki.events;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects changed product ids for the current transaction and publishes a single
+ * ProductChangedEvent after commit. Nothing is published for rolled back transactions.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductChangeTracker {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public void markChanged(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            eventPublisher.publishEvent(new ProductChangedEvent(Set.of(productId), false));
+            return;
+        }
+
+        ChangedProducts changed = (ChangedProducts) TransactionSynchronizationManager.getResource(this);
+        if (changed == null) {
+            changed = new ChangedProducts();
+            TransactionSynchronizationManager.bindResource(this, changed);
+            TransactionSynchronizationManager.registerSynchronization(changed);
+        }
+        changed.productIds.add(productId);
+    }
+
+    private class ChangedProducts implements TransactionSynchronization {
+
+        private final Set<Integer> productIds = new LinkedHashSet<>();
+
+        @Override
+        public void afterCommit() {
+            log.debug("Products changed: {}", productIds);
+            eventPublisher.publishEvent(new ProductChangedEvent(Set.copyOf(productIds), false));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ProductChangeTracker.this);
+        }
+    }
+}
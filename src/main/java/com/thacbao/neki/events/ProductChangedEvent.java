@@ -0,0 +1,11 @@
+package com.thacbao.neki.events;
+
+import java.util.Set;
+
+/**
+ * Published once per committed transaction with the ids of every product whose own row,
+ * variants, images or inventory changed in it. Remote events come from other nodes through
+ * ProductChangeBroadcaster and are not broadcast again.
+ */
+public record ProductChangedEvent(Set<Integer> productIds, boolean remote) {
+}
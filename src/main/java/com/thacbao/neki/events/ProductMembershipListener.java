@@ -0,0 +1,69 @@
+package com.thacbao.neki.events;
+
+import com.thacbao.neki.model.Product;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Collection and topic membership lives in join tables owned by Product, and Hibernate runs no
+ * entity callback when only such a collection changes. This collection listener reports those
+ * edits to ProductChangeTracker like any other product change.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductMembershipListener implements PostCollectionRecreateEventListener,
+        PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    private static final Set<String> MEMBERSHIP_ROLES = Set.of(
+            Product.class.getName() + ".collections",
+            Product.class.getName() + ".topics");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ProductChangeTracker changeTracker;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        onChange(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        onChange(event);
+    }
+
+    private void onChange(AbstractCollectionEvent event) {
+        if (event.getAffectedOwnerOrNull() instanceof Product product
+                && MEMBERSHIP_ROLES.contains(event.getCollection().getRole())) {
+            changeTracker.markChanged(product.getId());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.thacbao.neki.events;
+
+import com.thacbao.neki.model.Review;
+import com.thacbao.neki.services.ProductRatingAggregator;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns review writes into O(1) rating deltas for their product: +rating on create,
+ * new minus old rating on update, -rating on delete
+ */
+@Component
+@RequiredArgsConstructor
+public class ReviewRatingListener {
+
+    // Resolved on use: the aggregator needs repositories, which need this listener's EntityManagerFactory
+    private final ObjectProvider<ProductRatingAggregator> ratingAggregator;
+
+    @PostLoad
+    public void onLoad(Review review) {
+        review.setPersistedRating(review.getRating());
+    }
+
+    @PostPersist
+    public void onCreate(Review review) {
+        ratingAggregator.getObject().recordDelta(productIdOf(review), review.getRating(), 1);
+        review.setPersistedRating(review.getRating());
+    }
+
+    @PostUpdate
+    public void onUpdate(Review review) {
+        Integer oldRating = review.getPersistedRating();
+        if (oldRating != null && !oldRating.equals(review.getRating())) {
+            ratingAggregator.getObject().recordDelta(productIdOf(review), review.getRating() - oldRating, 0);
+        }
+        review.setPersistedRating(review.getRating());
+    }
+
+    @PostRemove
+    public void onDelete(Review review) {
+        Integer rating = review.getPersistedRating() != null ? review.getPersistedRating() : review.getRating();
+        ratingAggregator.getObject().recordDelta(productIdOf(review), -rating, -1);
+    }
+
+    private Integer productIdOf(Review review) {
+        return review.getProduct() != null ? review.getProduct().getId() : null;
+    }
+}
@@ -9,6 +9,7 @@ public enum ErrorCode {
     NOT_FOUND(404, "Resource not found", HttpStatus.NOT_FOUND),
     ALREADY_EXISTS(409, "Resource already exists", HttpStatus.CONFLICT),
     INVALID_INPUT(400, "Invalid input", HttpStatus.BAD_REQUEST),
+    TOO_MANY_REQUESTS(429, "Too many requests", HttpStatus.TOO_MANY_REQUESTS),
     UNCATEGORIZED(500, "Uncategorized error", HttpStatus.INTERNAL_SERVER_ERROR),
     OTP_EXPIRED(400, "OTP expired", HttpStatus.BAD_REQUEST),
 
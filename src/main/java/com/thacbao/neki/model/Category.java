@@ -1,4 +1,5 @@
 package com.thacbao.neki.model;
+import com.thacbao.neki.events.CatalogReferenceListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
@@ -7,6 +8,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogReferenceListener.class)
 @Table(name = "categories")
 @Getter
 @Setter
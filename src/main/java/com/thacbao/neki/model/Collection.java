@@ -1,5 +1,6 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.CatalogReferenceListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,6 +9,7 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
+@EntityListeners(CatalogReferenceListener.class)
 @Table(name = "collections")
 @Getter
 @Setter
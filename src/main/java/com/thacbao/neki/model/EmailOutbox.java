@@ -0,0 +1,85 @@
+package com.thacbao.neki.model;
+
+import com.thacbao.neki.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * One email waiting to be sent, written in the same transaction as the change that caused it.
+ * Only the template and its values are stored; the dispatcher renders and sends the message,
+ * retrying with backoff until it is sent or runs out of attempts.
+ */
+@Entity
+@Table(name = "email_outbox", indexes = {
+        @Index(name = "idx_email_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox extends BaseEntity {
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private Template template;
+
+    @Builder.Default
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "params")
+    private Map<String, String> params = new HashMap<>();
+
+    @Builder.Default
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private Status status = Status.PENDING;
+
+    @Builder.Default
+    @Column(nullable = false)
+    private Integer attempts = 0;
+
+    // Also pushed forward while a dispatcher holds the row, so a crashed send is picked up again
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public enum Template {
+        OTP(true),
+        PASSWORD_RESET(true),
+        WELCOME(false),
+        PASSWORD_CHANGED(false),
+        ACCOUNT_BLOCKED(false),
+        ORDER_CONFIRMATION(false);
+
+        // Params carry a one-time code: sent only while it is fresh and cleared once the row is done
+        private final boolean secret;
+
+        Template(boolean secret) {
+            this.secret = secret;
+        }
+
+        public boolean isSecret() {
+            return secret;
+        }
+    }
+
+    public enum Status {
+        PENDING,
+        SENT,
+        FAILED
+    }
+}
@@ -1,5 +1,6 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.ProductChangeListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,6 +9,7 @@ import org.hibernate.annotations.UpdateTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
+@EntityListeners(ProductChangeListener.class)
 @Table(name = "inventory")
 @Getter
 @Setter
@@ -1,15 +1,25 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.ProductChangeListener;
 import com.thacbao.neki.model.base.AuditableEntity;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.math.BigDecimal;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "products")
+@EntityListeners(ProductChangeListener.class)
+@Table(name = "products", indexes = {
+        // Keyset pagination seeks on (sort column, id); InnoDB appends the primary key to secondary indexes
+        @Index(name = "idx_products_active_created", columnList = "is_active, created_at"),
+        @Index(name = "idx_products_active_name", columnList = "is_active, name"),
+        @Index(name = "idx_products_active_sold", columnList = "is_active, total_sold"),
+        @Index(name = "idx_products_active_views", columnList = "is_active, view_count"),
+        @Index(name = "idx_products_active_rating", columnList = "is_active, average_rating")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -77,6 +87,12 @@ public class Product extends AuditableEntity {
     @Column(name = "review_count")
     private Integer reviewCount = 0;
 
+    // Sum of all review ratings (denormalized), averageRating = ratingSum / reviewCount
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "rating_sum")
+    private Long ratingSum = 0L;
+
     // Total sold (denormalized)
     @Builder.Default
     @Column(name = "total_sold")
@@ -1,10 +1,12 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.ProductChangeListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@EntityListeners(ProductChangeListener.class)
 @Table(name = "product_images")
 @Getter
 @Setter
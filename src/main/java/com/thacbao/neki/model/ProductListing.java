@@ -0,0 +1,164 @@
+package com.thacbao.neki.model;
+
+import com.thacbao.neki.dto.response.BrandResponse;
+import com.thacbao.neki.dto.response.SubCategoryResponse;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Denormalized read model for catalog pages: one row per product holding exactly what
+ * ProductListResponse shows, plus the ids and columns listings filter and sort on.
+ * Rebuilt per product after every committed change to the product, its variants,
+ * images or inventory.
+ */
+@Entity
+@Table(name = "product_listing", indexes = {
+        @Index(name = "idx_listing_active_created", columnList = "is_active, created_at"),
+        @Index(name = "idx_listing_active_price", columnList = "is_active, current_price"),
+        @Index(name = "idx_listing_active_sold", columnList = "is_active, total_sold"),
+        @Index(name = "idx_listing_active_views", columnList = "is_active, view_count"),
+        @Index(name = "idx_listing_active_rating", columnList = "is_active, average_rating"),
+        @Index(name = "idx_listing_category", columnList = "category_id"),
+        @Index(name = "idx_listing_sub_category", columnList = "sub_category_id"),
+        @Index(name = "idx_listing_sub_category_path", columnList = "sub_category_path"),
+        @Index(name = "idx_listing_brand", columnList = "brand_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductListing {
+
+    // Same id as the product
+    @Id
+    @Column(name = "product_id")
+    private Integer id;
+
+    @Column(nullable = false)
+    private String name;
+
+    @Column(nullable = false)
+    private String slug;
+
+    @Column(name = "category_id", nullable = false)
+    private Integer categoryId;
+
+    @Column(name = "category_name", length = 100)
+    private String categoryName;
+
+    @Column(name = "sub_category_id", nullable = false)
+    private Integer subCategoryId;
+
+    // Materialized path of the sub-category, subtree filters match it by prefix
+    @Column(name = "sub_category_path")
+    private String subCategoryPath;
+
+    @Column(name = "sub_category_name", length = 100)
+    private String subCategoryName;
+
+    @Column(name = "brand_id", nullable = false)
+    private Integer brandId;
+
+    @Column(name = "brand_name", length = 100)
+    private String brandName;
+
+    @Column(name = "base_price", nullable = false, precision = 10, scale = 2)
+    private BigDecimal basePrice;
+
+    @Column(name = "sale_price", precision = 10, scale = 2)
+    private BigDecimal salePrice;
+
+    @Column(name = "current_price", nullable = false, precision = 10, scale = 2)
+    private BigDecimal currentPrice;
+
+    @Column(name = "discount_percentage", precision = 5, scale = 2)
+    private BigDecimal discountPercentage;
+
+    @Column(name = "is_on_sale")
+    private Boolean isOnSale;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Product.Gender gender;
+
+    @Column(name = "is_featured")
+    private Boolean isFeatured;
+
+    @Column(name = "is_new")
+    private Boolean isNew;
+
+    @Column(name = "is_active")
+    private Boolean isActive;
+
+    @Column(name = "primary_image", length = 500)
+    private String primaryImage;
+
+    @Column(name = "average_rating", precision = 3, scale = 2)
+    private BigDecimal averageRating;
+
+    @Column(name = "review_count")
+    private Integer reviewCount;
+
+    @Column(name = "total_sold")
+    private Integer totalSold;
+
+    @Column(name = "view_count")
+    private Long viewCount;
+
+    @Column(name = "in_stock")
+    private Boolean inStock;
+
+    @Builder.Default
+    @JdbcTypeCode(SqlTypes.JSON)
+    @Column(name = "available_colors")
+    private List<String> availableColors = new ArrayList<>();
+
+    // Product creation time, used for the default "newest" sort
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Column(name = "refreshed_at")
+    private LocalDateTime refreshedAt;
+
+    public static ProductListing from(Product product, SubCategoryResponse subCategory, BrandResponse brand,
+                                      String primaryImage, Boolean inStock, List<String> availableColors) {
+        return ProductListing.builder()
+                .id(product.getId())
+                .name(product.getName())
+                .slug(product.getSlug())
+                .categoryId(subCategory.getCategoryId())
+                .categoryName(subCategory.getCategoryName())
+                .subCategoryId(subCategory.getId())
+                .subCategoryPath(subCategory.getPath())
+                .subCategoryName(subCategory.getName())
+                .brandId(brand.getId())
+                .brandName(brand.getName())
+                .basePrice(product.getBasePrice())
+                .salePrice(product.getSalePrice())
+                .currentPrice(product.getCurrentPrice())
+                .discountPercentage(product.getDiscountPercentage())
+                .isOnSale(product.isOnSale())
+                .gender(product.getGender())
+                .isFeatured(product.getIsFeatured())
+                .isNew(product.getIsNew())
+                .isActive(product.getIsActive())
+                .primaryImage(primaryImage)
+                .averageRating(product.getAverageRating())
+                .reviewCount(product.getReviewCount())
+                .totalSold(product.getTotalSold())
+                .viewCount(product.getViewCount())
+                .inStock(inStock)
+                .availableColors(availableColors)
+                .createdAt(product.getCreatedAt())
+                .refreshedAt(LocalDateTime.now())
+                .build();
+    }
+}
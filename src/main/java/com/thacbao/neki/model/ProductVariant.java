@@ -1,5 +1,6 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.ProductChangeListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,6 +9,7 @@ import java.math.BigDecimal;
 import java.util.Set;
 
 @Entity
+@EntityListeners(ProductChangeListener.class)
 @Table(name = "product_variants")
 @Getter
 @Setter
@@ -7,7 +7,9 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "refresh_tokens")
+@Table(name = "refresh_tokens", indexes = {
+        @Index(name = "idx_refresh_token_user_active", columnList = "user_id, is_revoked, expires_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -19,7 +21,15 @@ public class RefreshToken extends BaseEntity {
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
 
-    @Column(nullable = false, unique = true, length = 500)
+    // SHA-256 of the token, hex encoded, in the existing token column; the token itself is never stored.
+    // ddl-auto does not narrow existing columns, existing schemas need:
+    // DELETE FROM refresh_tokens WHERE CHAR_LENGTH(token) <> 64;
+    // ALTER TABLE refresh_tokens MODIFY token CHAR(64) NOT NULL;
+    @Column(name = "token", nullable = false, unique = true, length = 64, columnDefinition = "CHAR(64)")
+    private String tokenHash;
+
+    // Plain token, only set on a freshly issued instance so it can be handed to the client
+    @Transient
     private String token;
 
     @Column(name = "expires_at", nullable = false)
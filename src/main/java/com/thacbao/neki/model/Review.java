@@ -1,10 +1,12 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.ReviewRatingListener;
 import com.thacbao.neki.model.base.AuditableEntity;
 import jakarta.persistence.*;
 import lombok.*;
 
 @Entity
+@EntityListeners(ReviewRatingListener.class)
 @Table(name = "reviews")
 @Getter
 @Setter
@@ -36,4 +38,8 @@ public class Review extends AuditableEntity {
     @Builder.Default
     @Column(name = "is_verified_purchase")
     private Boolean isVerifiedPurchase = false;
-}
\ No newline at end of file
+
+    // Rating as last loaded or written, so updates and deletes know the old value
+    @Transient
+    private Integer persistedRating;
+}
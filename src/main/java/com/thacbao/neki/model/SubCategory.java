@@ -1,5 +1,6 @@
 package com.thacbao.neki.model;
 
+import com.thacbao.neki.events.CatalogReferenceListener;
 import com.thacbao.neki.model.base.BaseEntity;
 import jakarta.persistence.*;
 import lombok.*;
@@ -8,7 +9,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "sub_categories")
+@EntityListeners(CatalogReferenceListener.class)
+@Table(name = "sub_categories", indexes = {
+        @Index(name = "idx_sub_category_path", columnList = "path")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -40,6 +44,10 @@ public class SubCategory extends BaseEntity {
     @Column(name = "image_url", length = 500)
     private String imageUrl;
 
+    // Ids from the root down to this sub-category, e.g. /3/17/42/, so a subtree is one prefix range
+    @Column(length = 255)
+    private String path;
+
     @Builder.Default
     @Column(name = "level")
     private Integer level = 1;
@@ -67,4 +75,8 @@ public class SubCategory extends BaseEntity {
     public boolean isRoot() {
         return parent == null;
     }
+
+    public static String pathOf(SubCategory parent, Integer id) {
+        return (parent != null ? parent.getPath() : "/") + id + "/";
+    }
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.thacbao.neki.model;
+
+import com.thacbao.neki.model.base.BaseEntity;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Access tokens of the user issued at or before revokedAt are no longer accepted.
+ * The id doubles as the denylist version: nodes poll for rows above the last id they saw.
+ * Rows older than the access token lifetime are purged.
+ */
+@Entity
+@Table(name = "token_revocations", indexes = {
+        @Index(name = "idx_token_revocation_revoked_at", columnList = "revoked_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TokenRevocation extends BaseEntity {
+
+    // Not a foreign key: revocations must outlive a deleted user
+    @Column(name = "user_id", nullable = false)
+    private Integer userId;
+
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt;
+}
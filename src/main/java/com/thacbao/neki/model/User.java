@@ -3,6 +3,7 @@ package com.thacbao.neki.model;
 import com.thacbao.neki.model.base.AuditableEntity;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -45,6 +46,12 @@ public class User extends AuditableEntity {
 
     private String provider;
 
+    // Bumped by every bulk revocation; access tokens carrying an older epoch are rejected
+    @Builder.Default
+    @ColumnDefault("0")
+    @Column(name = "token_epoch", nullable = false)
+    private Integer tokenEpoch = 0;
+
     @Column(name = "provider_id")
     private String providerId;
 
@@ -0,0 +1,46 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.model.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Integer> {
+
+    // Pending emails whose next attempt is due, oldest first
+    @Query("SELECT e.id FROM EmailOutbox e WHERE e.status = com.thacbao.neki.model.EmailOutbox.Status.PENDING " +
+            "AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<Integer> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Hold due rows until :until; rows another node claimed first are left out
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.nextAttemptAt = :until " +
+            "WHERE e.id = :id AND e.status = com.thacbao.neki.model.EmailOutbox.Status.PENDING AND e.nextAttemptAt <= :now")
+    int claim(@Param("id") Integer id, @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = com.thacbao.neki.model.EmailOutbox.Status.SENT, e.sentAt = :now, " +
+            "e.attempts = e.attempts + 1, e.lastError = NULL WHERE e.id IN :ids")
+    int markSent(@Param("ids") Collection<Integer> ids, @Param("now") LocalDateTime now);
+
+    // One-time codes are not kept once their row is sent or failed
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.params = NULL WHERE e.id IN :ids")
+    int clearParams(@Param("ids") Collection<Integer> ids);
+
+    @Modifying
+    @Query("UPDATE EmailOutbox e SET e.status = :status, e.attempts = e.attempts + 1, " +
+            "e.nextAttemptAt = :nextAttemptAt, e.lastError = :error WHERE e.id = :id")
+    int markFailed(@Param("id") Integer id,
+                   @Param("status") EmailOutbox.Status status,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+}
@@ -0,0 +1,27 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.model.JobLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    // Take or extend the lease if it expired or is already ours; 0 rows means another node holds it
+    @Modifying
+    @Query("UPDATE JobLease l SET l.owner = :owner, l.leasedUntil = :until " +
+            "WHERE l.name = :name AND (l.leasedUntil < :now OR l.owner = :owner)")
+    int tryTake(@Param("name") String name,
+                @Param("owner") String owner,
+                @Param("until") LocalDateTime until,
+                @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE JobLease l SET l.leasedUntil = :now WHERE l.name = :name AND l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
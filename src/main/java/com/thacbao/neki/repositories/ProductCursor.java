@@ -0,0 +1,41 @@
+package com.thacbao.neki.repositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thacbao.neki.exceptions.common.InvalidException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque keyset cursor: the sort signature, the sort key values of the last row and its id,
+ * serialized as base64url JSON. The signature lets us reject a cursor reused with another sort.
+ */
+record ProductCursor(String sort, List<String> values, Integer id) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    String encode() {
+        try {
+            byte[] json = MAPPER.writeValueAsBytes(this);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot encode product cursor", e);
+        }
+    }
+
+    static ProductCursor decode(String cursor) {
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor);
+            ProductCursor decoded = MAPPER.readValue(new String(json, StandardCharsets.UTF_8), ProductCursor.class);
+            if (decoded.sort() == null || decoded.values() == null || decoded.id() == null) {
+                throw new InvalidException("Cursor không hợp lệ");
+            }
+            return decoded;
+        } catch (InvalidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new InvalidException("Cursor không hợp lệ");
+        }
+    }
+}
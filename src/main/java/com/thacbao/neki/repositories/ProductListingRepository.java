@@ -0,0 +1,25 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.model.ProductListing;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ProductListingRepository extends JpaRepository<ProductListing, Integer>, ProductListingRepositoryCustom {
+
+    @Query("SELECT l.id FROM ProductListing l WHERE l.brandId = :brandId")
+    List<Integer> findIdsByBrandId(@Param("brandId") Integer brandId);
+
+    @Query("SELECT l.id FROM ProductListing l WHERE l.categoryId = :categoryId")
+    List<Integer> findIdsByCategoryId(@Param("categoryId") Integer categoryId);
+
+    // Rows under the sub-category at any depth: its id is a "/id/" segment of their stored path
+    @Query("SELECT l.id FROM ProductListing l WHERE l.subCategoryId = :subCategoryId " +
+            "OR l.subCategoryPath LIKE :pathSegment")
+    List<Integer> findIdsBySubCategoryTree(@Param("subCategoryId") Integer subCategoryId,
+                                           @Param("pathSegment") String pathSegment);
+}
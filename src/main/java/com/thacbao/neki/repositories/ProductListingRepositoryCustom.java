@@ -0,0 +1,27 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.model.ProductListing;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Map;
+
+public interface ProductListingRepositoryCustom {
+
+    /**
+     * Same filters and sorts as ProductRepositoryCustom.filterProducts, served from the product_listing table
+     */
+    Page<ProductListing> filterListings(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Slice variant of filterListings, no count query
+     */
+    Slice<ProductListing> filterListingsSlice(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Add view count deltas to the listing rows in one CASE update, without rebuilding them
+     */
+    long addViewCounts(Map<Integer, Long> deltas);
+}
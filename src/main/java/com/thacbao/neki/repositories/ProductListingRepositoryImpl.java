@@ -0,0 +1,225 @@
+package com.thacbao.neki.repositories;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.SubCategoryResponse;
+import com.thacbao.neki.model.*;
+import com.thacbao.neki.services.CatalogReferenceService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@Repository
+@RequiredArgsConstructor
+public class ProductListingRepositoryImpl implements ProductListingRepositoryCustom {
+
+    private final JPAQueryFactory queryFactory;
+    private final CatalogReferenceService catalogReferenceService;
+
+    private final QProductListing listing = QProductListing.productListing;
+
+    @Override
+    public Page<ProductListing> filterListings(ProductFilterRequest filter, Pageable pageable) {
+        BooleanBuilder builder = buildListingFilter(filter);
+
+        List<ProductListing> content = queryFactory
+                .selectFrom(listing)
+                .where(builder)
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long total = queryFactory
+                    .select(listing.id.count())
+                    .from(listing)
+                    .where(builder)
+                    .fetchOne();
+            return total != null ? total : 0L;
+        });
+    }
+
+    @Override
+    public Slice<ProductListing> filterListingsSlice(ProductFilterRequest filter, Pageable pageable) {
+        // One extra row tells whether there is a next page
+        List<ProductListing> rows = queryFactory
+                .selectFrom(listing)
+                .where(buildListingFilter(filter))
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<ProductListing> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public long addViewCounts(Map<Integer, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        CaseBuilder.Cases<Long, NumberExpression<Long>> cases = null;
+        for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+            cases = cases == null
+                    ? new CaseBuilder().when(listing.id.eq(delta.getKey())).then(delta.getValue())
+                    : cases.when(listing.id.eq(delta.getKey())).then(delta.getValue());
+        }
+
+        return queryFactory
+                .update(listing)
+                .set(listing.viewCount, listing.viewCount.coalesce(0L).add(cases.otherwise(0L)))
+                .where(listing.id.in(deltas.keySet()))
+                .execute();
+    }
+
+    // Helper methods
+    private BooleanBuilder buildListingFilter(ProductFilterRequest filter) {
+        BooleanBuilder builder = new BooleanBuilder();
+
+        // Base condition: only active products
+        builder.and(listing.isActive.isTrue());
+
+        // Filter by category
+        if (filter.getCategoryId() != null) {
+            builder.and(listing.categoryId.eq(filter.getCategoryId()));
+        }
+
+        // Filter by subcategory (including descendants at any depth)
+        if (filter.getSubCategoryId() != null) {
+            SubCategoryResponse filterSubCategory = catalogReferenceService.getSubCategory(filter.getSubCategoryId());
+            if (filterSubCategory == null || filterSubCategory.getPath() == null) {
+                // Without a path, the sub-category itself and its direct children
+                QSubCategory child = new QSubCategory("child");
+                builder.and(listing.subCategoryId.eq(filter.getSubCategoryId())
+                        .or(listing.subCategoryId.in(JPAExpressions.select(child.id)
+                                .from(child)
+                                .where(child.parent.id.eq(filter.getSubCategoryId())))));
+            } else {
+                builder.and(listing.subCategoryPath.startsWith(filterSubCategory.getPath()));
+            }
+        }
+
+        // Filter by brand
+        if (filter.getBrandId() != null) {
+            builder.and(listing.brandId.eq(filter.getBrandId()));
+        }
+
+        // Filter by collection
+        if (filter.getCollectionId() != null) {
+            QCollection filterCollection = new QCollection("filterCollection");
+            QProduct collectionProduct = new QProduct("collectionProduct");
+            builder.and(JPAExpressions.selectOne()
+                    .from(filterCollection)
+                    .join(filterCollection.products, collectionProduct)
+                    .where(filterCollection.id.eq(filter.getCollectionId()),
+                            collectionProduct.id.eq(listing.id))
+                    .exists());
+        }
+
+        // Filter by topic
+        if (filter.getTopicId() != null) {
+            QTopic filterTopic = new QTopic("filterTopic");
+            QProduct topicProduct = new QProduct("topicProduct");
+            builder.and(JPAExpressions.selectOne()
+                    .from(filterTopic)
+                    .join(filterTopic.products, topicProduct)
+                    .where(filterTopic.id.eq(filter.getTopicId()),
+                            topicProduct.id.eq(listing.id))
+                    .exists());
+        }
+
+        // Filter by gender
+        if (filter.getGender() != null) {
+            builder.and(listing.gender.eq(filter.getGender()));
+        }
+
+        // Filter by price range
+        if (filter.getMinPrice() != null) {
+            builder.and(
+                    listing.salePrice.isNull()
+                            .or(listing.salePrice.eq(BigDecimal.ZERO))
+                            .or(listing.salePrice.goe(filter.getMinPrice()))
+            );
+        }
+        if (filter.getMaxPrice() != null) {
+            builder.and(listing.currentPrice.loe(filter.getMaxPrice()));
+        }
+
+        // Filter by colors
+        if (filter.getColorIds() != null && !filter.getColorIds().isEmpty()) {
+            QProductVariant colorVariant = new QProductVariant("colorVariant");
+            builder.and(JPAExpressions.selectOne()
+                    .from(colorVariant)
+                    .where(colorVariant.product.id.eq(listing.id),
+                            colorVariant.color.id.in(filter.getColorIds()))
+                    .exists());
+        }
+
+        // Filter by sizes
+        if (filter.getSizeIds() != null && !filter.getSizeIds().isEmpty()) {
+            QProductVariant sizeVariant = new QProductVariant("sizeVariant");
+            builder.and(JPAExpressions.selectOne()
+                    .from(sizeVariant)
+                    .where(sizeVariant.product.id.eq(listing.id),
+                            sizeVariant.size.id.in(filter.getSizeIds()))
+                    .exists());
+        }
+
+        // Filter by featured
+        if (filter.getIsFeatured() != null && filter.getIsFeatured()) {
+            builder.and(listing.isFeatured.isTrue());
+        }
+
+        // Filter by new
+        if (filter.getIsNew() != null && filter.getIsNew()) {
+            builder.and(listing.isNew.isTrue());
+        }
+
+        // Filter by on sale
+        if (filter.getIsOnSale() != null && filter.getIsOnSale()) {
+            builder.and(listing.isOnSale.isTrue());
+        }
+
+        // Filter by in stock
+        if (filter.getInStock() != null && filter.getInStock()) {
+            builder.and(listing.inStock.isTrue());
+        }
+
+        return builder;
+    }
+
+    private OrderSpecifier<?>[] getOrderSpecifiers(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+
+        for (Sort.Order order : sort) {
+            Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+            orders.add(new OrderSpecifier<>(direction, ProductSortKey.from(order.getProperty()).expression(listing)));
+        }
+
+        if (orders.isEmpty()) {
+            orders.add(new OrderSpecifier<>(Order.DESC, listing.createdAt));
+        }
+
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+}
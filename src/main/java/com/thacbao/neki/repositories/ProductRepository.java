@@ -1,5 +1,6 @@
 package com.thacbao.neki.repositories;
 
+import com.thacbao.neki.dto.projection.ProductRatingAggregate;
 import com.thacbao.neki.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -11,6 +12,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -23,9 +25,16 @@ public interface ProductRepository extends JpaRepository<Product, Integer>, Prod
 
     boolean existsByName(String name);
 
-    // Find products by category hierarchy
-    @Query("SELECT p FROM Product p WHERE p.subCategory.id IN :subCategoryIds AND p.isActive = true")
-    Page<Product> findBySubCategoryIds(@Param("subCategoryIds") List<Integer> subCategoryIds, Pageable pageable);
+    boolean existsBySubCategory_Category_Id(Integer categoryId);
+
+    boolean existsBySubCategory_IdIn(Collection<Integer> subCategoryIds);
+
+    @Query("SELECT p.id FROM Product p WHERE p.subCategory.id IN :subCategoryIds")
+    List<Integer> findIdsBySubCategoryIds(@Param("subCategoryIds") Collection<Integer> subCategoryIds);
+
+    // Product ids in id order, used to walk the catalog in chunks
+    @Query("SELECT p.id FROM Product p WHERE p.id > :afterId ORDER BY p.id")
+    List<Integer> findIdsAfter(@Param("afterId") Integer afterId, Pageable pageable);
 
     // Find featured products
     Page<Product> findByIsFeaturedTrueAndIsActiveTrue(Pageable pageable);
@@ -52,12 +61,28 @@ public interface ProductRepository extends JpaRepository<Product, Integer>, Prod
     @Query("SELECT p FROM Product p WHERE p.isActive = true ORDER BY p.viewCount DESC")
     Page<Product> findPopularProducts(Pageable pageable);
 
-    // Increment view count
+    // Increment view count, one row update per view; page views go through ProductViewCounter instead
     @Modifying
     @Query("UPDATE Product p SET p.viewCount = p.viewCount + 1 WHERE p.id = :productId")
     void incrementViewCount(@Param("productId") Integer productId);
 
-    // Update average rating
+    // Stored rating sum and count per product, for reconciliation
+    @Query("SELECT p.id AS productId, p.ratingSum AS ratingSum, p.reviewCount AS reviewCount " +
+            "FROM Product p WHERE p.id IN :productIds")
+    List<ProductRatingAggregate> findRatingAggregates(@Param("productIds") List<Integer> productIds);
+
+    // Overwrite the rating aggregate with recomputed values, only if the stored values are still the observed ones
+    @Modifying
+    @Query("UPDATE Product p SET p.ratingSum = :ratingSum, p.reviewCount = :count, p.averageRating = :rating " +
+            "WHERE p.id = :productId AND COALESCE(p.ratingSum, 0) = :expectedSum AND COALESCE(p.reviewCount, 0) = :expectedCount")
+    int repairRating(@Param("productId") Integer productId,
+                     @Param("expectedSum") Long expectedSum,
+                     @Param("expectedCount") Integer expectedCount,
+                     @Param("ratingSum") Long ratingSum,
+                     @Param("count") Integer count,
+                     @Param("rating") BigDecimal rating);
+
+    // Update average rating; review writes go through ProductRatingAggregator instead
     @Modifying
     @Query("UPDATE Product p SET p.averageRating = :rating, p.reviewCount = :count WHERE p.id = :productId")
     void updateRating(@Param("productId") Integer productId,
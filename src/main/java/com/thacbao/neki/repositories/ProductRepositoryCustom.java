@@ -1,12 +1,21 @@
 package com.thacbao.neki.repositories;
 
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.projection.ProductFacetDocument;
+import com.thacbao.neki.dto.projection.ProductRatingDelta;
 import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.CursorPageResponse;
+import com.thacbao.neki.dto.response.ProductListResponse;
 import com.thacbao.neki.model.Product;
+import com.thacbao.neki.model.ProductListing;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 public interface ProductRepositoryCustom {
 
@@ -15,6 +24,53 @@ public interface ProductRepositoryCustom {
      */
     Page<Product> filterProducts(ProductFilterRequest filter, Pageable pageable);
 
+    /**
+     * Keyset (cursor) variant of filterProducts: seeks past the last row of the previous page
+     * instead of using OFFSET, so deep pages cost the same as the first one.
+     * Pass a null cursor for the first page and the returned nextCursor afterwards.
+     * Returns the page of ids only, to be hydrated with findListingsByIds.
+     */
+    CursorPageResponse<Integer> filterProductIdsByCursor(ProductFilterRequest filter, Sort sort, String cursor, int size);
+
+    /**
+     * Slice variant of filterProductIds for clients that do not need a total: no count query is run
+     */
+    Slice<Integer> filterProductIdsSlice(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Count products matching the filter (count of ids, EXISTS semi-joins, no DISTINCT)
+     */
+    long countProducts(ProductFilterRequest filter);
+
+    /**
+     * Phase one of a listing: the page of matching product ids only
+     */
+    Page<Integer> filterProductIds(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Phase two of a listing: hydrate list items for the given ids with a fixed number of
+     * batched IN queries (product + brand/category, images, variants with color and inventory),
+     * whatever the page size. Results keep the order of the given ids.
+     */
+    List<ProductListResponse> findListingsByIds(List<Integer> productIds);
+
+    /**
+     * Build product_listing read model rows for the given ids, same batched loading as findListingsByIds.
+     * Ids without a product are simply absent from the result.
+     */
+    List<ProductListing> buildListingRows(List<Integer> productIds);
+
+    /**
+     * Load facet index documents for the given ids in four batched queries.
+     * Only active products are returned.
+     */
+    List<ProductFacetDocument> findFacetDocuments(List<Integer> productIds);
+
+    /**
+     * Active products in the subtrees of the given sub-categories, any depth
+     */
+    Page<Product> findBySubCategoryIds(List<Integer> subCategoryIds, Pageable pageable);
+
     /**
      * Get products by collection
      */
@@ -54,4 +110,22 @@ public interface ProductRepositoryCustom {
      * Get available sizes for filtered products
      */
     List<String> getAvailableSizes(ProductFilterRequest filter);
-}
\ No newline at end of file
+
+    /**
+     * Facet counts for the full filter, total and price range, all from one UNION ALL query
+     * with a facet tag per row
+     */
+    ProductFacetCounts countFacets(ProductFilterRequest filter);
+
+    /**
+     * Add buffered view count deltas in one UPDATE ... SET view_count = view_count + CASE id ... END.
+     * Deltas are additive, so several nodes flushing the same products merge correctly.
+     */
+    long addViewCounts(Map<Integer, Long> deltas);
+
+    /**
+     * Add rating deltas (sum and count) in one CASE update, then recompute average_rating
+     * from the updated columns
+     */
+    long addRatingDeltas(Map<Integer, ProductRatingDelta> deltas);
+}
@@ -1,23 +1,50 @@
 package com.thacbao.neki.repositories;
 
 import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
 import com.querydsl.core.types.Order;
 import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
 import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.JPAExpressions;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLQuery;
 import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAProvider;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUtil;
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.projection.ProductFacetDocument;
+import com.thacbao.neki.dto.projection.ProductRatingDelta;
 import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.BrandResponse;
+import com.thacbao.neki.dto.response.CursorPageResponse;
+import com.thacbao.neki.dto.response.ProductListResponse;
+import com.thacbao.neki.dto.response.SubCategoryResponse;
+import com.thacbao.neki.exceptions.common.InvalidException;
 import com.thacbao.neki.model.*;
+import com.thacbao.neki.services.CatalogReferenceService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Repository
@@ -25,13 +52,23 @@ import java.util.stream.Collectors;
 public class ProductRepositoryImpl implements ProductRepositoryCustom {
 
     private final JPAQueryFactory queryFactory;
+    private final EntityManager entityManager;
+    private final CatalogReferenceService catalogReferenceService;
+
+    // Facet tags of the rows returned by the countFacets union
+    private static final int FACET_TOTAL = 0;
+    private static final int FACET_BRAND = 1;
+    private static final int FACET_GENDER = 2;
+    private static final int FACET_COLLECTION = 3;
+    private static final int FACET_TOPIC = 4;
+    private static final int FACET_COLOR = 5;
+    private static final int FACET_SIZE = 6;
 
     private final QProduct product = QProduct.product;
     private final QProductVariant variant = QProductVariant.productVariant;
     private final QInventory inventory = QInventory.inventory;
+    private final QProductImage image = QProductImage.productImage;
     private final QSubCategory subCategory = QSubCategory.subCategory;
-    private final QCategory category = QCategory.category;
-    private final QBrand brand = QBrand.brand;
     private final QColor color = QColor.color;
     private final QSize size = QSize.size;
     private final QCollection collection = QCollection.collection;
@@ -39,121 +76,314 @@ public class ProductRepositoryImpl implements ProductRepositoryCustom {
 
     @Override
     public Page<Product> filterProducts(ProductFilterRequest filter, Pageable pageable) {
-        BooleanBuilder builder = new BooleanBuilder();
+        BooleanBuilder builder = buildProductFilter(filter);
 
-        // Base condition: only active products
-        builder.and(product.isActive.isTrue());
+        // Get page content
+        List<Product> content = selectFilteredProducts(builder)
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
 
-        // Filter by category
-        if (filter.getCategoryId() != null) {
-            builder.and(subCategory.category.id.eq(filter.getCategoryId()));
+        // Count only when the page alone cannot tell the total (e.g. not on a short first/last page)
+        return PageableExecutionUtils.getPage(content, pageable, () -> countProducts(filter));
+    }
+
+    @Override
+    public Slice<Integer> filterProductIdsSlice(ProductFilterRequest filter, Pageable pageable) {
+        // Fetch one extra row to know whether there is a next page, no count query
+        List<Integer> rows = queryFactory
+                .select(product.id)
+                .from(product)
+                .where(buildProductFilter(filter))
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize() + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        List<Integer> content = hasNext ? new ArrayList<>(rows.subList(0, pageable.getPageSize())) : rows;
+
+        return new SliceImpl<>(content, pageable, hasNext);
+    }
+
+    @Override
+    public long countProducts(ProductFilterRequest filter) {
+        // count(id) over products only: the filter is built from semi-joins, so there are
+        // no duplicated rows to de-duplicate and no join to sub_categories or brands
+        Long total = queryFactory
+                .select(product.id.count())
+                .from(product)
+                .where(buildProductFilter(filter))
+                .fetchOne();
+
+        return total != null ? total : 0L;
+    }
+
+    @Override
+    public CursorPageResponse<Integer> filterProductIdsByCursor(ProductFilterRequest filter, Sort sort, String cursor, int size) {
+        BooleanBuilder builder = buildProductFilter(filter);
+        List<KeysetOrder> orders = getKeysetOrders(sort);
+        String signature = getSortSignature(orders);
+
+        // Seek past the last row of the previous page instead of skipping rows with OFFSET
+        if (cursor != null && !cursor.isBlank()) {
+            ProductCursor decoded = ProductCursor.decode(cursor);
+            if (!signature.equals(decoded.sort())) {
+                throw new InvalidException("Cursor không khớp với kiểu sắp xếp hiện tại");
+            }
+            builder.and(buildKeysetPredicate(orders, decoded));
         }
 
-        // Filter by subcategory (including children)
-        if (filter.getSubCategoryId() != null) {
-            builder.and(product.subCategory.id.eq(filter.getSubCategoryId())
-                    .or(product.subCategory.parent.id.eq(filter.getSubCategoryId())));
+        // Only the id and the sort keys are read here; the page is hydrated by id afterwards
+        List<Expression<?>> columns = new ArrayList<>();
+        List<OrderSpecifier<?>> orderSpecifiers = new ArrayList<>();
+        for (KeysetOrder order : orders) {
+            ComparableExpressionBase<?> column = order.key().expression(product);
+            columns.add(column);
+            orderSpecifiers.add(new OrderSpecifier<>(order.direction(), column));
         }
+        columns.add(product.id);
+        // id breaks ties so every row has a unique position
+        orderSpecifiers.add(new OrderSpecifier<>(orders.get(orders.size() - 1).direction(), product.id));
 
-        // Filter by brand
-        if (filter.getBrandId() != null) {
-            builder.and(product.brand.id.eq(filter.getBrandId()));
+        // Fetch one extra row to know whether there is a next page without counting
+        List<Tuple> rows = queryFactory
+                .select(columns.toArray(new Expression[0]))
+                .from(product)
+                .where(builder)
+                .orderBy(orderSpecifiers.toArray(new OrderSpecifier[0]))
+                .limit(size + 1L)
+                .fetch();
+
+        boolean hasNext = rows.size() > size;
+        List<Tuple> content = hasNext ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Tuple last = content.get(content.size() - 1);
+            // A null sort value stays null, not the string "null"
+            List<String> values = columns.subList(0, orders.size()).stream()
+                    .map(column -> Objects.toString(last.get(column), null))
+                    .toList();
+            nextCursor = new ProductCursor(signature, values, last.get(product.id)).encode();
         }
 
-        // Filter by collection
-        if (filter.getCollectionId() != null) {
-            builder.and(product.collections.any().id.eq(filter.getCollectionId()));
+        return CursorPageResponse.<Integer>builder()
+                .content(content.stream().map(row -> row.get(product.id)).toList())
+                .size(size)
+                .hasNext(hasNext)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    @Override
+    public Page<Integer> filterProductIds(ProductFilterRequest filter, Pageable pageable) {
+        List<Integer> ids = queryFactory
+                .select(product.id)
+                .from(product)
+                .where(buildProductFilter(filter))
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        return PageableExecutionUtils.getPage(ids, pageable, () -> countProducts(filter));
+    }
+
+    @Override
+    public List<ProductListResponse> findListingsByIds(List<Integer> productIds) {
+        return hydrateListings(productIds, ProductListResponse::from);
+    }
+
+    @Override
+    public List<ProductListing> buildListingRows(List<Integer> productIds) {
+        return hydrateListings(productIds, ProductListing::from);
+    }
+
+    /**
+     * Load products plus primary image, stock flag and colors for all given ids in three queries,
+     * then assemble one item per product in id order. Sub-category, category and brand come from
+     * the reference cache, so the product query joins nothing.
+     */
+    private <T> List<T> hydrateListings(List<Integer> productIds, ListingAssembler<T> assembler) {
+        if (productIds == null || productIds.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        // Filter by topic
-        if (filter.getTopicId() != null) {
-            builder.and(product.topics.any().id.eq(filter.getTopicId()));
+        Map<Integer, Product> products = queryFactory
+                .selectFrom(product)
+                .where(product.id.in(productIds))
+                .fetch()
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+
+        // Reading the id of a lazy association does not initialize it
+        Map<Integer, SubCategoryResponse> subCategories = catalogReferenceService.getSubCategories(
+                products.values().stream().map(item -> item.getSubCategory().getId()).toList());
+        Map<Integer, BrandResponse> brands = catalogReferenceService.getBrands(
+                products.values().stream().map(item -> item.getBrand().getId()).toList());
+
+        // Primary image: flagged primary first, then by display order
+        Map<Integer, String> primaryImages = new HashMap<>();
+        List<Tuple> imageRows = queryFactory
+                .select(image.product.id, image.imageUrl)
+                .from(image)
+                .where(image.product.id.in(productIds))
+                .orderBy(image.product.id.asc(), image.isPrimary.desc(), image.displayOrder.asc(), image.id.asc())
+                .fetch();
+        for (Tuple row : imageRows) {
+            primaryImages.putIfAbsent(row.get(image.product.id), row.get(image.imageUrl));
         }
 
-        // Filter by gender
-        if (filter.getGender() != null) {
-            builder.and(product.gender.eq(filter.getGender()));
+        // Stock and colors from variants
+        Map<Integer, Boolean> inStock = new HashMap<>();
+        Map<Integer, Set<String>> colors = new HashMap<>();
+        List<Tuple> variantRows = queryFactory
+                .select(variant.product.id, color.name, inventory.quantity, inventory.reservedQuantity)
+                .from(variant)
+                .join(variant.color, color)
+                .leftJoin(variant.inventory, inventory)
+                .where(variant.product.id.in(productIds))
+                .orderBy(variant.product.id.asc(), variant.id.asc())
+                .fetch();
+        for (Tuple row : variantRows) {
+            Integer productId = row.get(variant.product.id);
+            colors.computeIfAbsent(productId, id -> new LinkedHashSet<>()).add(row.get(color.name));
+
+            boolean available = isAvailable(row.get(inventory.quantity), row.get(inventory.reservedQuantity));
+            inStock.merge(productId, available, Boolean::logicalOr);
         }
 
-        // Filter by price range
-        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
-            if (filter.getMinPrice() != null) {
-                builder.and(
-                        product.salePrice.isNull()
-                                .or(product.salePrice.eq(BigDecimal.ZERO))
-                                .or(product.salePrice.goe(filter.getMinPrice()))
-                );
-            }
-            if (filter.getMaxPrice() != null) {
-                builder.and(
-                        Expressions.cases()
-                                .when(product.salePrice.isNotNull().and(product.salePrice.gt(BigDecimal.ZERO)))
-                                .then(product.salePrice)
-                                .otherwise(product.basePrice)
-                                .loe(filter.getMaxPrice())
-                );
+        List<T> listings = new ArrayList<>(productIds.size());
+        for (Integer productId : productIds) {
+            Product item = products.get(productId);
+            if (item == null) {
+                continue;
             }
+            listings.add(assembler.assemble(
+                    item,
+                    subCategories.get(item.getSubCategory().getId()),
+                    brands.get(item.getBrand().getId()),
+                    primaryImages.get(productId),
+                    inStock.getOrDefault(productId, false),
+                    new ArrayList<>(colors.getOrDefault(productId, Set.of()))
+            ));
         }
+        return listings;
+    }
 
-        // Filter by colors
-        if (filter.getColorIds() != null && !filter.getColorIds().isEmpty()) {
-            builder.and(product.variants.any().color.id.in(filter.getColorIds()));
+    @Override
+    public List<ProductFacetDocument> findFacetDocuments(List<Integer> productIds) {
+        if (productIds == null || productIds.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        // Filter by sizes
-        if (filter.getSizeIds() != null && !filter.getSizeIds().isEmpty()) {
-            builder.and(product.variants.any().size.id.in(filter.getSizeIds()));
+        List<Tuple> productRows = queryFactory
+                .select(product.id, product.subCategory.id, product.brand.id, product.gender,
+                        product.basePrice, product.salePrice, product.isFeatured, product.isNew,
+                        product.name, product.totalSold, product.viewCount, product.averageRating,
+                        product.createdAt)
+                .from(product)
+                .where(product.id.in(productIds), product.isActive.isTrue())
+                .fetch();
+        if (productRows.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        // Filter by featured
-        if (filter.getIsFeatured() != null && filter.getIsFeatured()) {
-            builder.and(product.isFeatured.isTrue());
-        }
+        // Category and path of each sub-category from the reference cache
+        Map<Integer, SubCategoryResponse> subCategories = catalogReferenceService.getSubCategories(
+                productRows.stream().map(row -> row.get(product.subCategory.id)).toList());
 
-        // Filter by new
-        if (filter.getIsNew() != null && filter.getIsNew()) {
-            builder.and(product.isNew.isTrue());
-        }
+        Map<Integer, Set<Integer>> collectionIds = groupIds(queryFactory
+                .select(product.id, collection.id)
+                .from(product)
+                .join(product.collections, collection)
+                .where(product.id.in(productIds))
+                .fetch(), product.id, collection.id);
 
-        // Filter by on sale
-        if (filter.getIsOnSale() != null && filter.getIsOnSale()) {
-            builder.and(product.salePrice.isNotNull())
-                    .and(product.salePrice.gt(BigDecimal.ZERO))
-                    .and(product.salePrice.lt(product.basePrice));
-        }
+        Map<Integer, Set<Integer>> topicIds = groupIds(queryFactory
+                .select(product.id, topic.id)
+                .from(product)
+                .join(product.topics, topic)
+                .where(product.id.in(productIds))
+                .fetch(), product.id, topic.id);
+
+        // Colors, sizes and stock from variants
+        Map<Integer, Set<Integer>> colorIds = new HashMap<>();
+        Map<Integer, Set<Integer>> sizeIds = new HashMap<>();
+        Set<Integer> inStock = new HashSet<>();
+        List<Tuple> variantRows = queryFactory
+                .select(variant.product.id, variant.color.id, variant.size.id,
+                        inventory.quantity, inventory.reservedQuantity)
+                .from(variant)
+                .leftJoin(variant.inventory, inventory)
+                .where(variant.product.id.in(productIds))
+                .fetch();
+        for (Tuple row : variantRows) {
+            Integer productId = row.get(variant.product.id);
+            colorIds.computeIfAbsent(productId, id -> new HashSet<>()).add(row.get(variant.color.id));
+            sizeIds.computeIfAbsent(productId, id -> new HashSet<>()).add(row.get(variant.size.id));
 
-        // Filter by in stock
-        if (filter.getInStock() != null && filter.getInStock()) {
-            builder.and(product.variants.any().inventory.quantity.gt(0));
+            if (isAvailable(row.get(inventory.quantity), row.get(inventory.reservedQuantity))) {
+                inStock.add(productId);
+            }
         }
 
-        // Build query
-        JPAQuery<Product> query = queryFactory
-                .selectDistinct(product)
-                .from(product)
-                .leftJoin(product.subCategory, subCategory).fetchJoin()
-                .leftJoin(subCategory.category, category).fetchJoin()
-                .leftJoin(product.brand, brand).fetchJoin()
-                .where(builder);
+        List<ProductFacetDocument> documents = new ArrayList<>(productRows.size());
+        for (Tuple row : productRows) {
+            Integer productId = row.get(product.id);
+            SubCategoryResponse productSubCategory = subCategories.get(row.get(product.subCategory.id));
+            documents.add(ProductFacetDocument.builder()
+                    .id(productId)
+                    .categoryId(productSubCategory != null ? productSubCategory.getCategoryId() : null)
+                    .subCategoryId(row.get(product.subCategory.id))
+                    .subCategoryPath(productSubCategory != null ? productSubCategory.getPath() : null)
+                    .brandId(row.get(product.brand.id))
+                    .gender(row.get(product.gender))
+                    .basePrice(row.get(product.basePrice))
+                    .salePrice(row.get(product.salePrice))
+                    .isFeatured(row.get(product.isFeatured))
+                    .isNew(row.get(product.isNew))
+                    .inStock(inStock.contains(productId))
+                    .collectionIds(collectionIds.getOrDefault(productId, Set.of()))
+                    .topicIds(topicIds.getOrDefault(productId, Set.of()))
+                    .colorIds(colorIds.getOrDefault(productId, Set.of()))
+                    .sizeIds(sizeIds.getOrDefault(productId, Set.of()))
+                    .name(row.get(product.name))
+                    .totalSold(row.get(product.totalSold))
+                    .viewCount(row.get(product.viewCount))
+                    .averageRating(row.get(product.averageRating))
+                    .createdAt(row.get(product.createdAt))
+                    .build());
+        }
+        return documents;
+    }
 
-        // Apply sorting
-        query.orderBy(getOrderSpecifiers(pageable.getSort()));
+    @Override
+    public Page<Product> findBySubCategoryIds(List<Integer> subCategoryIds, Pageable pageable) {
+        if (subCategoryIds == null || subCategoryIds.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        BooleanBuilder builder = new BooleanBuilder(product.isActive.isTrue())
+                .and(inSubCategoryTrees(subCategoryIds));
 
-        // Get total count
-        long total = queryFactory
-                .selectDistinct(product)
-                .from(product)
-                .leftJoin(product.subCategory, subCategory)
+        List<Product> content = queryFactory
+                .selectFrom(product)
                 .where(builder)
-                .fetchCount();
-
-        // Get page content
-        List<Product> content = query
+                .orderBy(getOrderSpecifiers(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
 
-        return new PageImpl<>(content, pageable, total);
+        return PageableExecutionUtils.getPage(content, pageable, () -> {
+            Long total = queryFactory
+                    .select(product.id.count())
+                    .from(product)
+                    .where(builder)
+                    .fetchOne();
+            return total != null ? total : 0L;
+        });
     }
 
     @Override
@@ -226,7 +456,7 @@ public class ProductRepositoryImpl implements ProductRepositoryCustom {
                 .leftJoin(product.variants, variant)
                 .leftJoin(variant.inventory, inventory)
                 .where(product.isActive.isTrue()
-                        .and(inventory.quantity.gt(0)))
+                        .and(hasAvailableStock(inventory)))
                 .orderBy(getOrderSpecifiers(pageable.getSort()));
 
         long total = query.fetchCount();
@@ -240,34 +470,18 @@ public class ProductRepositoryImpl implements ProductRepositoryCustom {
 
     @Override
     public BigDecimal[] getPriceRangeByCategory(Integer categoryId) {
-        // Get min price
-        BigDecimal minPrice = queryFactory
-                .select(
-                        Expressions.cases()
-                                .when(product.salePrice.isNotNull().and(product.salePrice.gt(BigDecimal.ZERO)))
-                                .then(product.salePrice)
-                                .otherwise(product.basePrice)
-                                .min()
-                )
-                .from(product)
-                .leftJoin(product.subCategory, subCategory)
-                .where(subCategory.category.id.eq(categoryId).and(product.isActive.isTrue()))
-                .fetchOne();
+        NumberExpression<BigDecimal> currentPrice = ProductSortKey.currentPrice(product);
 
-        // Get max price
-        BigDecimal maxPrice = queryFactory
-                .select(
-                        Expressions.cases()
-                                .when(product.salePrice.isNotNull().and(product.salePrice.gt(BigDecimal.ZERO)))
-                                .then(product.salePrice)
-                                .otherwise(product.basePrice)
-                                .max()
-                )
+        // Min and max in one scan
+        Tuple range = queryFactory
+                .select(currentPrice.min(), currentPrice.max())
                 .from(product)
                 .leftJoin(product.subCategory, subCategory)
                 .where(subCategory.category.id.eq(categoryId).and(product.isActive.isTrue()))
                 .fetchOne();
 
+        BigDecimal minPrice = range != null ? range.get(0, BigDecimal.class) : null;
+        BigDecimal maxPrice = range != null ? range.get(1, BigDecimal.class) : null;
         return new BigDecimal[]{
                 minPrice != null ? minPrice : BigDecimal.ZERO,
                 maxPrice != null ? maxPrice : BigDecimal.ZERO
@@ -276,88 +490,466 @@ public class ProductRepositoryImpl implements ProductRepositoryCustom {
 
     @Override
     public List<String> getAvailableColors(ProductFilterRequest filter) {
-        BooleanBuilder builder = buildFilterConditions(filter);
-
         return queryFactory
                 .selectDistinct(color.name)
-                .from(product)
-                .leftJoin(product.variants, variant)
-                .leftJoin(variant.color, color)
-                .where(builder)
+                .from(variant)
+                .join(variant.color, color)
+                .where(variant.product.id.in(filteredProductIds(filter)))
                 .fetch();
     }
 
     @Override
     public List<String> getAvailableSizes(ProductFilterRequest filter) {
-        BooleanBuilder builder = buildFilterConditions(filter);
-
         return queryFactory
                 .selectDistinct(size.name)
-                .from(product)
-                .leftJoin(product.variants, variant)
-                .leftJoin(variant.size, size)
-                .where(builder)
+                .from(variant)
+                .join(variant.size, size)
+                .where(variant.product.id.in(filteredProductIds(filter)))
                 .fetch();
     }
 
-    // Helper methods
-    private OrderSpecifier<?>[] getOrderSpecifiers(Sort sort) {
-        List<OrderSpecifier<?>> orders = new ArrayList<>();
+    @Override
+    public ProductFacetCounts countFacets(ProductFilterRequest filter) {
+        // Render the filter once; its constants become ordinal parameters, so every branch
+        // that repeats the text binds the same values
+        JPQLSerializer serializer = new JPQLSerializer(JPAProvider.getTemplates(entityManager), entityManager);
+        serializer.handle(buildProductFilter(filter));
+        String where = serializer.toString();
+        String filteredIds = "select product.id from Product product where " + where;
+        String currentPrice = "case when product.salePrice > 0 then product.salePrice else product.basePrice end";
+        String noPrice = "cast(null as BigDecimal), cast(null as BigDecimal)";
+
+        // One round trip: each branch is tagged with its facet and yields (facet, value, count, min, max)
+        String hql = String.join(" union all ",
+                "select " + FACET_TOTAL + ", '', count(product.id), min(" + currentPrice + "), max(" + currentPrice + ")"
+                        + " from Product product where " + where,
+                "select " + FACET_BRAND + ", str(product.brand.id), count(product.id), " + noPrice
+                        + " from Product product where " + where + " group by product.brand.id",
+                "select " + FACET_GENDER + ", str(product.gender), count(product.id), " + noPrice
+                        + " from Product product where " + where + " group by product.gender",
+                "select " + FACET_COLLECTION + ", str(facetCollection.id), count(product.id), " + noPrice
+                        + " from Product product join product.collections facetCollection where " + where
+                        + " group by facetCollection.id",
+                "select " + FACET_TOPIC + ", str(facetTopic.id), count(product.id), " + noPrice
+                        + " from Product product join product.topics facetTopic where " + where
+                        + " group by facetTopic.id",
+                // To-many variant facets: distinct products per value among the filtered ids
+                "select " + FACET_COLOR + ", str(facetVariant.color.id), count(distinct facetVariant.product.id), " + noPrice
+                        + " from ProductVariant facetVariant where facetVariant.product.id in (" + filteredIds + ")"
+                        + " group by facetVariant.color.id",
+                "select " + FACET_SIZE + ", str(facetVariant.size.id), count(distinct facetVariant.product.id), " + noPrice
+                        + " from ProductVariant facetVariant where facetVariant.product.id in (" + filteredIds + ")"
+                        + " group by facetVariant.size.id");
+
+        Query query = entityManager.createQuery(hql);
+        JPAUtil.setConstants(query, serializer.getConstants(), Collections.emptyMap());
+
+        long total = 0;
+        BigDecimal minPrice = null;
+        BigDecimal maxPrice = null;
+        Map<Integer, Long> brands = new HashMap<>();
+        Map<Integer, Long> collections = new HashMap<>();
+        Map<Integer, Long> topics = new HashMap<>();
+        Map<Integer, Long> colors = new HashMap<>();
+        Map<Integer, Long> sizes = new HashMap<>();
+        Map<Product.Gender, Long> genders = new EnumMap<>(Product.Gender.class);
+
+        for (Object result : query.getResultList()) {
+            Object[] row = (Object[]) result;
+            int facet = ((Number) row[0]).intValue();
+            String value = (String) row[1];
+            long count = ((Number) row[2]).longValue();
+            if (facet == FACET_TOTAL) {
+                total = count;
+                minPrice = (BigDecimal) row[3];
+                maxPrice = (BigDecimal) row[4];
+                continue;
+            }
+            if (value == null) {
+                continue;
+            }
+            switch (facet) {
+                case FACET_BRAND -> brands.put(Integer.valueOf(value), count);
+                case FACET_GENDER -> {
+                    Product.Gender gender = parseGender(value);
+                    if (gender != null) {
+                        genders.put(gender, count);
+                    }
+                }
+                case FACET_COLLECTION -> collections.put(Integer.valueOf(value), count);
+                case FACET_TOPIC -> topics.put(Integer.valueOf(value), count);
+                case FACET_COLOR -> colors.put(Integer.valueOf(value), count);
+                case FACET_SIZE -> sizes.put(Integer.valueOf(value), count);
+                default -> {
+                }
+            }
+        }
 
-        for (Sort.Order order : sort) {
-            Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+        return ProductFacetCounts.builder()
+                .total(total)
+                .brands(brands)
+                .collections(collections)
+                .topics(topics)
+                .colors(colors)
+                .sizes(sizes)
+                .genders(genders)
+                .minPrice(minPrice != null ? minPrice : BigDecimal.ZERO)
+                .maxPrice(maxPrice != null ? maxPrice : BigDecimal.ZERO)
+                .build();
+    }
 
-            switch (order.getProperty()) {
-                case "price":
-                    orders.add(new OrderSpecifier<>(direction,
-                            Expressions.cases()
-                                    .when(product.salePrice.isNotNull().and(product.salePrice.gt(BigDecimal.ZERO)))
-                                    .then(product.salePrice)
-                                    .otherwise(product.basePrice)
-                    ));
-                    break;
-                case "name":
-                    orders.add(new OrderSpecifier<>(direction, product.name));
-                    break;
-                case "totalSold":
-                    orders.add(new OrderSpecifier<>(direction, product.totalSold));
-                    break;
-                case "viewCount":
-                    orders.add(new OrderSpecifier<>(direction, product.viewCount));
-                    break;
-                case "averageRating":
-                    orders.add(new OrderSpecifier<>(direction, product.averageRating));
-                    break;
-                case "createdAt":
-                    orders.add(new OrderSpecifier<>(direction, product.createdAt));
-                    break;
-                default:
-                    orders.add(new OrderSpecifier<>(direction, product.createdAt));
-                    break;
-            }
+    @Override
+    public long addViewCounts(Map<Integer, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
         }
 
-        if (orders.isEmpty()) {
-            orders.add(new OrderSpecifier<>(Order.DESC, product.createdAt));
+        CaseBuilder.Cases<Long, NumberExpression<Long>> cases = null;
+        for (Map.Entry<Integer, Long> delta : deltas.entrySet()) {
+            cases = cases == null
+                    ? new CaseBuilder().when(product.id.eq(delta.getKey())).then(delta.getValue())
+                    : cases.when(product.id.eq(delta.getKey())).then(delta.getValue());
         }
 
-        return orders.toArray(new OrderSpecifier[0]);
+        return queryFactory
+                .update(product)
+                .set(product.viewCount, product.viewCount.add(cases.otherwise(0L)))
+                .where(product.id.in(deltas.keySet()))
+                .execute();
     }
 
-    private BooleanBuilder buildFilterConditions(ProductFilterRequest filter) {
+    @Override
+    public long addRatingDeltas(Map<Integer, ProductRatingDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        CaseBuilder.Cases<Long, NumberExpression<Long>> sumCases = null;
+        CaseBuilder.Cases<Integer, NumberExpression<Integer>> countCases = null;
+        for (Map.Entry<Integer, ProductRatingDelta> delta : deltas.entrySet()) {
+            Predicate isProduct = product.id.eq(delta.getKey());
+            long sumDelta = delta.getValue().ratingSum();
+            int countDelta = delta.getValue().reviewCount();
+            sumCases = sumCases == null
+                    ? new CaseBuilder().when(isProduct).then(sumDelta)
+                    : sumCases.when(isProduct).then(sumDelta);
+            countCases = countCases == null
+                    ? new CaseBuilder().when(isProduct).then(countDelta)
+                    : countCases.when(isProduct).then(countDelta);
+        }
+
+        // Additive, so concurrent flushes from several nodes merge
+        long updated = queryFactory
+                .update(product)
+                .set(product.ratingSum, product.ratingSum.coalesce(0L).add(sumCases.otherwise(0L)))
+                .set(product.reviewCount, product.reviewCount.coalesce(0).add(countCases.otherwise(0)))
+                .where(product.id.in(deltas.keySet()))
+                .execute();
+
+        // Average from the columns just written, in the same transaction. Ratings are 1 to 5, so a sum
+        // below the count means rating_sum was never backfilled; keep the old average until reconcile
+        queryFactory
+                .update(product)
+                .set(product.averageRating, new CaseBuilder()
+                        .when(product.reviewCount.gt(0).and(product.ratingSum.goe(product.reviewCount.longValue())))
+                        .then(Expressions.numberTemplate(BigDecimal.class, "{0} * 1.0 / {1}",
+                                product.ratingSum, product.reviewCount))
+                        .when(product.reviewCount.gt(0))
+                        .then(product.averageRating)
+                        .otherwise(BigDecimal.ZERO))
+                .where(product.id.in(deltas.keySet()))
+                .execute();
+
+        return updated;
+    }
+
+    // Helper methods
+    /**
+     * Full filter predicate. Every to-many condition (colors, sizes, collections, topics, stock)
+     * is an EXISTS / IN semi-join, so the predicate never multiplies product rows and neither
+     * the listing nor the count needs DISTINCT or joins.
+     */
+    private BooleanBuilder buildProductFilter(ProductFilterRequest filter) {
         BooleanBuilder builder = new BooleanBuilder();
+
+        // Base condition: only active products
         builder.and(product.isActive.isTrue());
 
+        // Filter by category (semi-join on sub_categories, no join on the listing query)
         if (filter.getCategoryId() != null) {
-            builder.and(subCategory.category.id.eq(filter.getCategoryId()));
+            QSubCategory categorySub = new QSubCategory("categorySub");
+            builder.and(product.subCategory.id.in(
+                    JPAExpressions.select(categorySub.id)
+                            .from(categorySub)
+                            .where(categorySub.category.id.eq(filter.getCategoryId()))));
         }
+
+        // Filter by subcategory (including descendants at any depth): a prefix range on the path index
         if (filter.getSubCategoryId() != null) {
-            builder.and(product.subCategory.id.eq(filter.getSubCategoryId()));
+            builder.and(inSubCategoryTrees(List.of(filter.getSubCategoryId())));
         }
+
+        // Filter by brand
         if (filter.getBrandId() != null) {
             builder.and(product.brand.id.eq(filter.getBrandId()));
         }
 
+        // Filter by collection
+        if (filter.getCollectionId() != null) {
+            QCollection filterCollection = new QCollection("filterCollection");
+            QProduct collectionProduct = new QProduct("collectionProduct");
+            builder.and(JPAExpressions.selectOne()
+                    .from(filterCollection)
+                    .join(filterCollection.products, collectionProduct)
+                    .where(filterCollection.id.eq(filter.getCollectionId()),
+                            collectionProduct.id.eq(product.id))
+                    .exists());
+        }
+
+        // Filter by topic
+        if (filter.getTopicId() != null) {
+            QTopic filterTopic = new QTopic("filterTopic");
+            QProduct topicProduct = new QProduct("topicProduct");
+            builder.and(JPAExpressions.selectOne()
+                    .from(filterTopic)
+                    .join(filterTopic.products, topicProduct)
+                    .where(filterTopic.id.eq(filter.getTopicId()),
+                            topicProduct.id.eq(product.id))
+                    .exists());
+        }
+
+        // Filter by gender
+        if (filter.getGender() != null) {
+            builder.and(product.gender.eq(filter.getGender()));
+        }
+
+        // Filter by price range
+        if (filter.getMinPrice() != null || filter.getMaxPrice() != null) {
+            if (filter.getMinPrice() != null) {
+                builder.and(
+                        product.salePrice.isNull()
+                                .or(product.salePrice.eq(BigDecimal.ZERO))
+                                .or(product.salePrice.goe(filter.getMinPrice()))
+                );
+            }
+            if (filter.getMaxPrice() != null) {
+                builder.and(ProductSortKey.currentPrice(product).loe(filter.getMaxPrice()));
+            }
+        }
+
+        // Filter by colors
+        if (filter.getColorIds() != null && !filter.getColorIds().isEmpty()) {
+            QProductVariant colorVariant = new QProductVariant("colorVariant");
+            builder.and(JPAExpressions.selectOne()
+                    .from(colorVariant)
+                    .where(colorVariant.product.id.eq(product.id),
+                            colorVariant.color.id.in(filter.getColorIds()))
+                    .exists());
+        }
+
+        // Filter by sizes
+        if (filter.getSizeIds() != null && !filter.getSizeIds().isEmpty()) {
+            QProductVariant sizeVariant = new QProductVariant("sizeVariant");
+            builder.and(JPAExpressions.selectOne()
+                    .from(sizeVariant)
+                    .where(sizeVariant.product.id.eq(product.id),
+                            sizeVariant.size.id.in(filter.getSizeIds()))
+                    .exists());
+        }
+
+        // Filter by featured
+        if (filter.getIsFeatured() != null && filter.getIsFeatured()) {
+            builder.and(product.isFeatured.isTrue());
+        }
+
+        // Filter by new
+        if (filter.getIsNew() != null && filter.getIsNew()) {
+            builder.and(product.isNew.isTrue());
+        }
+
+        // Filter by on sale
+        if (filter.getIsOnSale() != null && filter.getIsOnSale()) {
+            builder.and(product.salePrice.isNotNull())
+                    .and(product.salePrice.gt(BigDecimal.ZERO))
+                    .and(product.salePrice.lt(product.basePrice));
+        }
+
+        // Filter by in stock
+        if (filter.getInStock() != null && filter.getInStock()) {
+            QProductVariant stockVariant = new QProductVariant("stockVariant");
+            QInventory stockInventory = new QInventory("stockInventory");
+            builder.and(JPAExpressions.selectOne()
+                    .from(stockVariant)
+                    .join(stockVariant.inventory, stockInventory)
+                    .where(stockVariant.product.id.eq(product.id),
+                            hasAvailableStock(stockInventory))
+                    .exists());
+        }
+
         return builder;
     }
+
+    /**
+     * Products in the subtrees of the given sub-categories. Root paths are resolved from the
+     * reference cache first, so the database only sees constant prefixes on the path index.
+     * A root without a path falls back to itself and its direct children.
+     */
+    private Predicate inSubCategoryTrees(List<Integer> subCategoryIds) {
+        Map<Integer, SubCategoryResponse> roots = catalogReferenceService.getSubCategories(subCategoryIds);
+        QSubCategory descendant = new QSubCategory("descendant");
+        BooleanBuilder prefixes = new BooleanBuilder();
+        BooleanBuilder matches = new BooleanBuilder();
+
+        for (Integer id : subCategoryIds) {
+            SubCategoryResponse root = roots.get(id);
+            if (root != null && root.getPath() != null) {
+                prefixes.or(descendant.path.startsWith(root.getPath()));
+            } else {
+                matches.or(product.subCategory.id.eq(id).or(product.subCategory.parent.id.eq(id)));
+            }
+        }
+        if (prefixes.hasValue()) {
+            matches.or(product.subCategory.id.in(
+                    JPAExpressions.select(descendant.id)
+                            .from(descendant)
+                            .where(prefixes)));
+        }
+        return matches;
+    }
+
+    /**
+     * Ids of the products matching the full filter, for IN semi-joins from variant queries
+     */
+    private JPQLQuery<Integer> filteredProductIds(ProductFilterRequest filter) {
+        return JPAExpressions.select(product.id)
+                .from(product)
+                .where(buildProductFilter(filter));
+    }
+
+    // Associations stay lazy; their names come from CatalogReferenceService by id
+    private JPAQuery<Product> selectFilteredProducts(Predicate predicate) {
+        return queryFactory
+                .selectFrom(product)
+                .where(predicate);
+    }
+
+    private OrderSpecifier<?>[] getOrderSpecifiers(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+
+        for (Sort.Order order : sort) {
+            Order direction = order.isAscending() ? Order.ASC : Order.DESC;
+            orders.add(new OrderSpecifier<>(direction, ProductSortKey.from(order.getProperty()).expression(product)));
+        }
+
+        if (orders.isEmpty()) {
+            orders.add(new OrderSpecifier<>(Order.DESC, product.createdAt));
+        }
+
+        return orders.toArray(new OrderSpecifier[0]);
+    }
+
+    /**
+     * Resolve the requested sort into keyset columns, defaulting to newest first
+     */
+    private List<KeysetOrder> getKeysetOrders(Sort sort) {
+        List<KeysetOrder> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            orders.add(new KeysetOrder(ProductSortKey.from(order.getProperty()),
+                    order.isAscending() ? Order.ASC : Order.DESC));
+        }
+        if (orders.isEmpty()) {
+            orders.add(new KeysetOrder(ProductSortKey.CREATED_AT, Order.DESC));
+        }
+        return orders;
+    }
+
+    /**
+     * Rows strictly after the cursor in (k1, k2, ..., id) order:
+     * k1 > v1 OR (k1 = v1 AND k2 > v2) OR ... OR (k1 = v1 AND ... AND id > lastId).
+     * NULL keys follow MySQL ordering, first when ascending and last when descending.
+     */
+    private Predicate buildKeysetPredicate(List<KeysetOrder> orders, ProductCursor cursor) {
+        if (cursor.values().size() != orders.size()) {
+            throw new InvalidException("Cursor không hợp lệ");
+        }
+
+        BooleanBuilder after = new BooleanBuilder();
+        BooleanBuilder samePrefix = new BooleanBuilder();
+
+        for (int i = 0; i < orders.size(); i++) {
+            KeysetOrder order = orders.get(i);
+            boolean ascending = order.direction() == Order.ASC;
+            ComparableExpressionBase<?> column = order.key().expression(product);
+            String raw = cursor.values().get(i);
+
+            if (raw == null) {
+                // Only non-null values come after a NULL ascending, nothing does descending
+                if (ascending) {
+                    after.or(new BooleanBuilder(samePrefix).and(column.isNotNull()));
+                }
+                samePrefix.and(column.isNull());
+                continue;
+            }
+
+            Object value;
+            try {
+                value = order.key().parse(raw);
+            } catch (RuntimeException e) {
+                throw new InvalidException("Cursor không hợp lệ");
+            }
+            Expression<?> constant = Expressions.constant(value);
+
+            BooleanExpression beyond = Expressions.booleanOperation(ascending ? Ops.GT : Ops.LT, column, constant);
+            after.or(new BooleanBuilder(samePrefix).and(ascending ? beyond : beyond.or(column.isNull())));
+            samePrefix.and(Expressions.booleanOperation(Ops.EQ, column, constant));
+        }
+
+        Order idDirection = orders.get(orders.size() - 1).direction();
+        after.or(new BooleanBuilder(samePrefix)
+                .and(idDirection == Order.ASC ? product.id.gt(cursor.id()) : product.id.lt(cursor.id())));
+
+        return after;
+    }
+
+    private String getSortSignature(List<KeysetOrder> orders) {
+        return orders.stream()
+                .map(order -> order.key().getProperty() + ":" + order.direction())
+                .collect(Collectors.joining(","));
+    }
+
+    private record KeysetOrder(ProductSortKey key, Order direction) {
+    }
+
+    // In stock means something is left after reservations: quantity - reserved > 0
+    private static BooleanExpression hasAvailableStock(QInventory stock) {
+        return stock.quantity.gt(stock.reservedQuantity.coalesce(0));
+    }
+
+    private static boolean isAvailable(Integer quantity, Integer reserved) {
+        return quantity != null && quantity - (reserved != null ? reserved : 0) > 0;
+    }
+
+    // The column may hold the enum name or its display value, e.g. UNISEX or Unisex
+    private static Product.Gender parseGender(String value) {
+        for (Product.Gender gender : Product.Gender.values()) {
+            if (gender.name().equalsIgnoreCase(value) || gender.getValue().equalsIgnoreCase(value)) {
+                return gender;
+            }
+        }
+        return null;
+    }
+
+    private Map<Integer, Set<Integer>> groupIds(List<Tuple> rows, Expression<Integer> key, Expression<Integer> value) {
+        Map<Integer, Set<Integer>> grouped = new HashMap<>();
+        for (Tuple row : rows) {
+            grouped.computeIfAbsent(row.get(key), id -> new HashSet<>()).add(row.get(value));
+        }
+        return grouped;
+    }
+
+    @FunctionalInterface
+    private interface ListingAssembler<T> {
+        T assemble(Product product, SubCategoryResponse subCategory, BrandResponse brand,
+                   String primaryImage, Boolean inStock, List<String> availableColors);
+    }
 }
\ No newline at end of file
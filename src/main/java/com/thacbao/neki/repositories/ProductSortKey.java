@@ -0,0 +1,154 @@
+package com.thacbao.neki.repositories;
+
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.thacbao.neki.model.QProduct;
+import com.thacbao.neki.model.QProductListing;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Sortable product columns, shared by offset and keyset (cursor) pagination and by the
+ * product_listing read model.
+ * Each key knows its query expression and how to parse its value back from a cursor.
+ */
+enum ProductSortKey {
+
+    PRICE("price") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return currentPrice(product);
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.currentPrice;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return new BigDecimal(raw);
+        }
+    },
+    NAME("name") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return product.name;
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.name;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return raw;
+        }
+    },
+    TOTAL_SOLD("totalSold") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return product.totalSold;
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.totalSold;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return Integer.valueOf(raw);
+        }
+    },
+    VIEW_COUNT("viewCount") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return product.viewCount;
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.viewCount;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return Long.valueOf(raw);
+        }
+    },
+    AVERAGE_RATING("averageRating") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return product.averageRating;
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.averageRating;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return new BigDecimal(raw);
+        }
+    },
+    CREATED_AT("createdAt") {
+        @Override
+        ComparableExpressionBase<?> expression(QProduct product) {
+            return product.createdAt;
+        }
+
+        @Override
+        ComparableExpressionBase<?> expression(QProductListing listing) {
+            return listing.createdAt;
+        }
+
+        @Override
+        Object parse(String raw) {
+            return LocalDateTime.parse(raw);
+        }
+    };
+
+    private final String property;
+
+    ProductSortKey(String property) {
+        this.property = property;
+    }
+
+    String getProperty() {
+        return property;
+    }
+
+    abstract ComparableExpressionBase<?> expression(QProduct product);
+
+    // Same column on the product_listing read model
+    abstract ComparableExpressionBase<?> expression(QProductListing listing);
+
+    abstract Object parse(String raw);
+
+    /**
+     * Resolve a sort property, falling back to createdAt like the offset listing does
+     */
+    static ProductSortKey from(String property) {
+        for (ProductSortKey key : values()) {
+            if (key.property.equals(property)) {
+                return key;
+            }
+        }
+        return CREATED_AT;
+    }
+
+    /**
+     * Sale price when set, otherwise base price
+     */
+    static NumberExpression<BigDecimal> currentPrice(QProduct product) {
+        return Expressions.cases()
+                .when(product.salePrice.isNotNull().and(product.salePrice.gt(BigDecimal.ZERO)))
+                .then(product.salePrice)
+                .otherwise(product.basePrice);
+    }
+}
@@ -1,31 +1,37 @@
 package com.thacbao.neki.repositories;
 
 import com.thacbao.neki.model.RefreshToken;
-import com.thacbao.neki.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
-import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Integer> {
 
-    Optional<RefreshToken> findByToken(String token);
-
-    List<RefreshToken> findByUser(User user);
+    Optional<RefreshToken> findByTokenHash(String tokenHash);
 
+    // Set-based revocation of every live token of the user, on the (user, revoked, expires) index
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.user = :user")
-    void deleteByUser(User user);
+    @Query("UPDATE RefreshToken rt SET rt.isRevoked = true, rt.revokedAt = :now WHERE rt.user.id = :userId AND rt.isRevoked = false")
+    int revokeAllActiveByUserId(@Param("userId") Integer userId, @Param("now") LocalDateTime now);
 
+    // Revoke a token only if it is still live; 0 rows means it was already used or revoked
     @Modifying
-    @Query("DELETE FROM RefreshToken rt WHERE rt.expiresAt < :now OR rt.isRevoked = true")
-    void deleteExpiredAndRevokedTokens(LocalDateTime now);
+    @Query("UPDATE RefreshToken rt SET rt.isRevoked = true, rt.revokedAt = :now WHERE rt.id = :id AND rt.isRevoked = false")
+    int revokeIfActive(@Param("id") Integer id, @Param("now") LocalDateTime now);
 
-    @Query("SELECT COUNT(rt) FROM RefreshToken rt WHERE rt.user = :user AND rt.isRevoked = false AND rt.expiresAt > :now")
-    long countValidTokensByUser(User user, LocalDateTime now);
-}
\ No newline at end of file
+    // Revoke the user's live tokens beyond the newest :keep, ranked on the (user, revoked, expires) index
+    @Modifying
+    @Query(value = "UPDATE refresh_tokens rt JOIN (" +
+            "SELECT ranked.id FROM (" +
+            "SELECT id, ROW_NUMBER() OVER (ORDER BY created_at DESC, id DESC) AS rn FROM refresh_tokens " +
+            "WHERE user_id = :userId AND is_revoked = false AND expires_at > :now) ranked " +
+            "WHERE ranked.rn > :keep) excess ON rt.id = excess.id " +
+            "SET rt.is_revoked = true, rt.revoked_at = :now", nativeQuery = true)
+    int revokeOldestBeyond(@Param("userId") Integer userId, @Param("keep") int keep, @Param("now") LocalDateTime now);
+}
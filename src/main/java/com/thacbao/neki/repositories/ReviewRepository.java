@@ -0,0 +1,19 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.dto.projection.ProductRatingAggregate;
+import com.thacbao.neki.model.Review;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ReviewRepository extends JpaRepository<Review, Integer> {
+
+    // Actual rating sum and count per product, for reconciliation
+    @Query("SELECT r.product.id AS productId, SUM(r.rating) AS ratingSum, COUNT(r) AS reviewCount " +
+            "FROM Review r WHERE r.product.id IN :productIds GROUP BY r.product.id")
+    List<ProductRatingAggregate> aggregateRatings(@Param("productIds") List<Integer> productIds);
+}
@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,6 +16,10 @@ public interface SubCategoryRepository extends JpaRepository<SubCategory, Intege
 
     Optional<SubCategory> findBySlug(String slug);
 
+    // Sub-categories with their category in one query
+    @Query("SELECT sc FROM SubCategory sc JOIN FETCH sc.category WHERE sc.id IN :ids")
+    List<SubCategory> findAllWithCategoryByIdIn(@Param("ids") Collection<Integer> ids);
+
     boolean existsBySlug(String slug);
 
     boolean existsByName(String name);
@@ -36,6 +41,15 @@ public interface SubCategoryRepository extends JpaRepository<SubCategory, Intege
     // Find subcategories by level
     List<SubCategory> findByCategoryAndLevel(Category category, Integer level);
 
+    List<SubCategory> findByCategory(Category category);
+
+    // A sub-category and all its descendants
+    List<SubCategory> findByPathStartingWith(String path);
+
+    // Every active sub-category of an active category, the whole tree in one query
+    @Query("SELECT sc FROM SubCategory sc JOIN FETCH sc.category c WHERE sc.isActive = true AND c.isActive = true")
+    List<SubCategory> findAllActiveWithCategory();
+
     // Get full hierarchy for a category
     @Query("SELECT sc FROM SubCategory sc LEFT JOIN FETCH sc.children WHERE sc.category = :category AND sc.parent IS NULL AND sc.isActive = true ORDER BY sc.displayOrder")
     List<SubCategory> findHierarchyByCategory(@Param("category") Category category);
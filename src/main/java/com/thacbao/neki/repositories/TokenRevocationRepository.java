@@ -0,0 +1,18 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.model.TokenRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface TokenRevocationRepository extends JpaRepository<TokenRevocation, Integer> {
+
+    // Revocations still relevant to unexpired tokens, for the initial load
+    List<TokenRevocation> findByRevokedAtAfterOrderByIdAsc(LocalDateTime after);
+
+    // Revocations written since the given version
+    List<TokenRevocation> findByIdGreaterThanOrderByIdAsc(Integer id);
+}
@@ -4,7 +4,9 @@ import com.thacbao.neki.model.User;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -18,6 +20,11 @@ public interface UserRepository extends JpaRepository<User, Integer>, UserReposi
     @Query("SELECT COUNT(u) FROM User u WHERE u.isActive = true AND u.emailVerified = true")
     long countActiveVerifiedUsers();
 
+    // Flush first so a pending update of the loaded user cannot write the old epoch back
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE User u SET u.tokenEpoch = u.tokenEpoch + 1 WHERE u.id = :userId")
+    int incrementTokenEpoch(@Param("userId") Integer userId);
+
     boolean existsByEmail(String email);
 
     boolean existsByPhone(String phone);
@@ -0,0 +1,133 @@
+package com.thacbao.neki.security;
+
+import com.thacbao.neki.exceptions.ErrorCode;
+import com.thacbao.neki.exceptions.common.AppException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * BCrypt on a small dedicated pool, so a login storm is limited to a few cores instead of
+ * every request thread. The queue is bounded and a hash that waited longer than max-wait-ms
+ * is dropped, so overload is answered at once with 429 rather than by piling up requests.
+ * Publishes password.hash.wait and password.hash.duration (timers, tagged by operation),
+ * password.hash.rejected (counter) and password.hash.queue (gauge).
+ */
+@Component
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final long maxWaitNanos;
+
+    private final Timer encodeWait;
+    private final Timer encodeDuration;
+    private final Timer matchesWait;
+    private final Timer matchesDuration;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(MeterRegistry meterRegistry,
+                                  @Value("${app.security.password-hash.strength:10}") int strength,
+                                  @Value("${app.security.password-hash.threads:0}") int threads,
+                                  @Value("${app.security.password-hash.queue-size:64}") int queueSize,
+                                  @Value("${app.security.password-hash.max-wait-ms:2000}") long maxWaitMs) {
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+
+        // Half the cores by default, leaving the rest for catalog traffic
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeWait = Timer.builder("password.hash.wait").tag("operation", "encode").register(meterRegistry);
+        this.encodeDuration = Timer.builder("password.hash.duration").tag("operation", "encode").register(meterRegistry);
+        this.matchesWait = Timer.builder("password.hash.wait").tag("operation", "matches").register(meterRegistry);
+        this.matchesDuration = Timer.builder("password.hash.duration").tag("operation", "matches").register(meterRegistry);
+        this.rejected = Counter.builder("password.hash.rejected").register(meterRegistry);
+        Gauge.builder("password.hash.queue", executor, pool -> pool.getQueue().size()).register(meterRegistry);
+
+        log.info("Password hashing pool started with {} threads and queue size {}", poolSize, queueSize);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeWait, encodeDuration, () -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(matchesWait, matchesDuration, () -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Helper methods
+    private <T> T run(Timer waitTimer, Timer durationTimer, Supplier<T> hash) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long waited = System.nanoTime() - submittedAt;
+                waitTimer.record(waited, TimeUnit.NANOSECONDS);
+                if (waited > maxWaitNanos) {
+                    throw new RejectedExecutionException("Password hash waited " + waited / 1_000_000 + " ms");
+                }
+                return durationTimer.record(hash);
+            });
+        } catch (RejectedExecutionException e) {
+            throw busy();
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw busy();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                throw busy();
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new AppException(ErrorCode.INTERNAL_SERVER_ERROR, e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private AppException busy() {
+        rejected.increment();
+        log.warn("Password hashing overloaded, queue size {}", executor.getQueue().size());
+        return new AppException(ErrorCode.TOO_MANY_REQUESTS, "Hệ thống đang bận, vui lòng thử lại sau");
+    }
+}
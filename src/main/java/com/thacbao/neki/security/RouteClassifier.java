@@ -0,0 +1,102 @@
+package com.thacbao.neki.security;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Single list of routes that bypass token authentication, shared by JwtFilter and
+ * SecurityConfig. Routes are compiled once into a character trie, so classifying a path
+ * is one walk over its characters with no regex and no allocation.
+ */
+@Component
+public class RouteClassifier {
+
+    public enum RouteType {
+        PUBLIC,
+        REFRESH_TOKEN,
+        AUTHENTICATED
+    }
+
+    // Matched as is
+    private static final String[] PUBLIC_PATHS = {
+            "/api/v1/auth/login",
+            "/api/v1/auth/signup",
+            "/api/v1/auth/forgot-password",
+            "/api/v1/auth/verify-account",
+            "/api/v1/auth/regenerate-otp",
+            "/api/v1/auth/test",
+            "/api/v1/auth/verify-forgot-password",
+            "/api/v1/categories/hierarchy",
+    };
+
+    // Matched as is or followed by further segments
+    private static final String[] PUBLIC_PREFIXES = {
+            "/api/v1/auth/set-password",
+            "/oauth2/callback",
+    };
+
+    private static final String REFRESH_TOKEN_PATH = "/api/v1/auth/refresh-token";
+
+    private final Node root = new Node();
+
+    public RouteClassifier() {
+        for (String path : PUBLIC_PATHS) {
+            insert(path).exact = RouteType.PUBLIC;
+        }
+        for (String prefix : PUBLIC_PREFIXES) {
+            insert(prefix).prefix = RouteType.PUBLIC;
+        }
+        insert(REFRESH_TOKEN_PATH).exact = RouteType.REFRESH_TOKEN;
+    }
+
+    public RouteType classify(String path) {
+        Node node = root;
+        // Deepest prefix route passed at a segment boundary
+        RouteType matched = null;
+
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '/' && node.prefix != null) {
+                matched = node.prefix;
+            }
+            node = c < Node.WIDTH ? node.children[c] : null;
+            if (node == null) {
+                return matched != null ? matched : RouteType.AUTHENTICATED;
+            }
+        }
+
+        if (node.exact != null) {
+            return node.exact;
+        }
+        if (node.prefix != null) {
+            return node.prefix;
+        }
+        return matched != null ? matched : RouteType.AUTHENTICATED;
+    }
+
+    public boolean isPublic(String path) {
+        return classify(path) == RouteType.PUBLIC;
+    }
+
+    private Node insert(String path) {
+        Node node = root;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c >= Node.WIDTH) {
+                throw new IllegalArgumentException("Route must be ASCII: " + path);
+            }
+            if (node.children[c] == null) {
+                node.children[c] = new Node();
+            }
+            node = node.children[c];
+        }
+        return node;
+    }
+
+    private static final class Node {
+        private static final int WIDTH = 128;
+
+        private final Node[] children = new Node[WIDTH];
+        private RouteType exact;
+        private RouteType prefix;
+    }
+}
@@ -25,6 +25,7 @@ public class UserPrincipal implements UserDetails, OAuth2User {
     private Boolean emailVerified;
     private Collection<? extends GrantedAuthority> authorities;
     private Map<String, Object> attributes;
+    private Integer tokenEpoch;
 
     public UserPrincipal(Integer id, String email, String fullName, String passwordHash, Boolean isActive, Boolean emailVerified, Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
@@ -41,7 +42,7 @@ public class UserPrincipal implements UserDetails, OAuth2User {
                 .map(role -> new SimpleGrantedAuthority("ROLE_" + role.getName().toUpperCase()))
                 .collect(Collectors.toList());
 
-        return new UserPrincipal(
+        UserPrincipal userPrincipal = new UserPrincipal(
                 user.getId(),
                 user.getEmail(),
                 user.getFullName(),
@@ -50,6 +51,27 @@ public class UserPrincipal implements UserDetails, OAuth2User {
                 user.getEmailVerified(),
                 authorities
         );
+        userPrincipal.setTokenEpoch(user.getTokenEpoch());
+        return userPrincipal;
+    }
+
+    /**
+     * Principal built from signed token claims alone, without loading the user
+     */
+    public static UserPrincipal create(VerifiedClaims claims) {
+        List<GrantedAuthority> authorities = claims.roles().stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role.toUpperCase()))
+                .collect(Collectors.toList());
+
+        return new UserPrincipal(
+                claims.userId(),
+                claims.subject(),
+                null,
+                null,
+                true,
+                claims.emailVerified(),
+                authorities
+        );
     }
 
     public static UserPrincipal create(User user, Map<String, Object> attributes) {
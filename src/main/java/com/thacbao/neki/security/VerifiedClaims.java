@@ -0,0 +1,48 @@
+package com.thacbao.neki.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Claims of a token whose signature has already been checked. Built once per request by
+ * JwtUtils.verify and shared by the filter and validateToken, so a token is parsed only once.
+ */
+public record VerifiedClaims(String subject, Integer userId, List<String> roles, Boolean emailVerified,
+                             Integer tokenEpoch, String type, Instant issuedAt, Instant expiresAt) {
+
+    // type claim of access tokens; other tokens, e.g. password reset, carry their own type
+    public static final String ACCESS_TOKEN = "access";
+
+    public static VerifiedClaims from(Claims claims) {
+        return new VerifiedClaims(
+                claims.getSubject(),
+                claims.get("userId", Integer.class),
+                rolesOf(claims.get("roles")),
+                claims.get("emailVerified", Boolean.class),
+                claims.get("tokenEpoch", Integer.class),
+                claims.get("type", String.class),
+                claims.getIssuedAt() != null ? claims.getIssuedAt().toInstant() : null,
+                claims.getExpiration() != null ? claims.getExpiration().toInstant() : null);
+    }
+
+    public boolean isExpired() {
+        return expiresAt != null && expiresAt.isBefore(Instant.now());
+    }
+
+    public boolean isAccessToken() {
+        return ACCESS_TOKEN.equals(type);
+    }
+
+    public boolean hasRole(String role) {
+        return roles.contains(role.toUpperCase());
+    }
+
+    private static List<String> rolesOf(Object value) {
+        if (value instanceof List<?> list) {
+            return list.stream().map(String::valueOf).toList();
+        }
+        return List.of();
+    }
+}
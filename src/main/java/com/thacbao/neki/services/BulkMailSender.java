@@ -0,0 +1,16 @@
+package com.thacbao.neki.services;
+
+import jakarta.mail.internet.MimeMessage;
+
+import java.util.List;
+import java.util.Map;
+
+public interface BulkMailSender {
+
+    /**
+     * Send the messages in order, reusing one SMTP connection for up to the per-connection cap
+     * and pacing sends to the configured rate shared by all callers. A failed message does not
+     * stop the rest; the returned map holds each message that was not sent with its cause.
+     */
+    Map<MimeMessage, Exception> send(List<MimeMessage> messages);
+}
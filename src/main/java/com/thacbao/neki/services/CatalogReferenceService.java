@@ -0,0 +1,50 @@
+package com.thacbao.neki.services;
+
+import com.thacbao.neki.dto.response.*;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Cached lookups of catalog reference data. Returned responses are copies of the cache
+ * entries and may be modified by the caller.
+ */
+public interface CatalogReferenceService {
+
+    BrandResponse getBrand(Integer id);
+
+    ColorResponse getColor(Integer id);
+
+    SizeResponse getSize(Integer id);
+
+    CategoryResponse getCategory(Integer id);
+
+    SubCategoryResponse getSubCategory(Integer id);
+
+    TopicResponse getTopic(Integer id);
+
+    CollectionResponse getCollection(Integer id);
+
+    /**
+     * Cached brands by id, misses loaded in one query
+     */
+    Map<Integer, BrandResponse> getBrands(Collection<Integer> ids);
+
+    Map<Integer, ColorResponse> getColors(Collection<Integer> ids);
+
+    Map<Integer, SizeResponse> getSizes(Collection<Integer> ids);
+
+    Map<Integer, TopicResponse> getTopics(Collection<Integer> ids);
+
+    Map<Integer, CollectionResponse> getCollections(Collection<Integer> ids);
+
+    /**
+     * Cached sub-categories by id (with their category id and name), misses loaded in one query
+     */
+    Map<Integer, SubCategoryResponse> getSubCategories(Collection<Integer> ids);
+
+    /**
+     * Drop one cached entry, e.g. when another node reports a change
+     */
+    void evict(String cacheName, Integer id);
+}
@@ -3,6 +3,8 @@ package com.thacbao.neki.services;
 
 import com.thacbao.neki.dto.request.product.CategoryRequest;
 import com.thacbao.neki.dto.request.product.SubCategoryRequest;
+import com.thacbao.neki.dto.response.CategoryResponse;
+import com.thacbao.neki.dto.response.SubCategoryResponse;
 
 import java.util.List;
 
@@ -45,6 +47,12 @@ public interface CategoryService {
      */
     List<CategoryResponse> getAllCategoriesWithHierarchy();
 
+    /**
+     * Active category hierarchy as a serialized ApiResponse, cached until a category or
+     * sub-category changes. The array is shared between callers and must not be modified.
+     */
+    byte[] getCategoryHierarchyJson();
+
     /**
      * Reorder categories
      */
@@ -1,5 +1,6 @@
 package com.thacbao.neki.services;
 
+import com.thacbao.neki.dto.response.ImageUploadResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.util.List;
@@ -10,6 +11,9 @@ public interface CloudinaryService {
 
     List<String> uploadImages(List<MultipartFile> files, String folder);
 
+    // Upload concurrently and report each file, in input order
+    List<ImageUploadResult> uploadImagesWithResults(List<MultipartFile> files, String folder);
+
     void deleteImage(String imageUrl);
 
     void deleteImages(List<String> imageUrls);
@@ -0,0 +1,9 @@
+package com.thacbao.neki.services;
+
+public interface EmailOutboxDispatcher {
+
+    // Start sending due emails now rather than at the next poll
+    void wakeUp();
+
+    void poll();
+}
@@ -0,0 +1,29 @@
+package com.thacbao.neki.services;
+
+import java.util.List;
+
+public interface ExpiredRowPurger {
+
+    /**
+     * What to purge: rows of a table with an integer primary key "id" matching a SQL condition.
+     * Matching rows are deleted, or when clearColumns is set, kept with those columns nulled.
+     * Table, columns and condition come from code, parameters are bound.
+     */
+    record Spec(String name, String table, List<String> clearColumns, String condition, Object... params) {
+
+        public static Spec delete(String name, String table, String condition, Object... params) {
+            return new Spec(name, table, List.of(), condition, params);
+        }
+
+        public static Spec clear(String name, String table, List<String> columns, String condition, Object... params) {
+            return new Spec(name, table, List.copyOf(columns), condition, params);
+        }
+    }
+
+    /**
+     * Queue a purge on the background purge thread. It walks the primary key range in bounded
+     * chunks with a pause between them, under a cluster-wide lease named after the spec, and
+     * is skipped when another node holds the lease or the same purge is already queued.
+     */
+    void submit(Spec spec);
+}
@@ -0,0 +1,25 @@
+package com.thacbao.neki.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+
+public interface ImageProcessor {
+
+    enum Format {
+        JPEG,
+        PNG,
+        WEBP
+    }
+
+    // Format from the leading bytes of the file, null when it is not a supported image
+    Format detect(InputStream in) throws IOException;
+
+    /**
+     * Decode, apply the EXIF orientation, downscale to the configured maximum dimension and
+     * re-encode without metadata, on the bounded processing pool; WebP only loses its metadata
+     * chunks. Returns a new temp file owned by the caller. Images that cannot be processed are
+     * refused with an InvalidException rather than passed through.
+     */
+    Path process(Path source, Format format);
+}
@@ -0,0 +1,17 @@
+package com.thacbao.neki.services;
+
+import java.time.Duration;
+
+public interface JobLeaseService {
+
+    /**
+     * Take the named lease for this node, or extend it if this node already holds it.
+     * Returns false while another node holds an unexpired lease.
+     */
+    boolean tryAcquire(String name, Duration duration);
+
+    /**
+     * Give the lease up early so another node does not wait for it to expire
+     */
+    void release(String name);
+}
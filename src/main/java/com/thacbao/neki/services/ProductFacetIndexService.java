@@ -0,0 +1,37 @@
+package com.thacbao.neki.services;
+
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface ProductFacetIndexService {
+
+    /**
+     * True once the index is enabled and fully built
+     */
+    boolean isReady();
+
+    /**
+     * Answer a product filter from memory: the sorted page of matching ids and the total count
+     */
+    Page<Integer> filterProductIds(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Facet counts and price range for a product filter, one pass over the matching products
+     */
+    ProductFacetCounts countFacets(ProductFilterRequest filter);
+
+    void refresh(Collection<Integer> productIds);
+
+    /**
+     * Apply committed view count deltas in memory, without reloading the products. Views flushed
+     * by other nodes arrive with the next scheduled rebuild.
+     */
+    void addViewCounts(Map<Integer, Long> deltas);
+
+    void rebuildAll();
+}
@@ -0,0 +1,32 @@
+package com.thacbao.neki.services;
+
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.ProductListResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface ProductListingService {
+
+    Page<ProductListResponse> filterProducts(ProductFilterRequest filter, Pageable pageable);
+
+    Slice<ProductListResponse> filterProductsSlice(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Hydrate list items for the given ids from the read model, keeping their order
+     */
+    List<ProductListResponse> findListingsByIds(List<Integer> productIds);
+
+    void refresh(Collection<Integer> productIds);
+
+    /**
+     * Add flushed view count deltas in the caller's transaction, leaving the rest of each row as is
+     */
+    void addViewCounts(Map<Integer, Long> deltas);
+
+    void rebuildAll();
+}
@@ -0,0 +1,20 @@
+package com.thacbao.neki.services;
+
+public interface ProductRatingAggregator {
+
+    /**
+     * Record a change to a product's rating sum and review count. Applied once the
+     * current transaction commits and written to the products row on the next flush.
+     */
+    void recordDelta(Integer productId, long ratingSumDelta, int reviewCountDelta);
+
+    /**
+     * Write all pending deltas to the database
+     */
+    void flush();
+
+    /**
+     * Recompute rating sum, count and average from the reviews table and repair drifted products
+     */
+    void reconcile();
+}
@@ -0,0 +1,84 @@
+package com.thacbao.neki.services;
+
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.CursorPageResponse;
+import com.thacbao.neki.dto.response.FilterOptionsResponse;
+import com.thacbao.neki.dto.response.ProductListResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+
+public interface ProductService {
+
+    // ========== Listing ==========
+
+    /**
+     * Filter active products
+     */
+    Page<ProductListResponse> filterProducts(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Filter active products without a total, for clients that only page forward; skips the count query
+     */
+    Slice<ProductListResponse> filterProductsSlice(ProductFilterRequest filter, Pageable pageable);
+
+    /**
+     * Filter active products with keyset pagination
+     */
+    CursorPageResponse<ProductListResponse> filterProductsByCursor(ProductFilterRequest filter, Sort sort,
+                                                                   String cursor, int size);
+
+    /**
+     * Get products of a collection
+     */
+    Page<ProductListResponse> getProductsByCollection(Integer collectionId, Pageable pageable);
+
+    /**
+     * Get products of a topic
+     */
+    Page<ProductListResponse> getProductsByTopic(Integer topicId, Pageable pageable);
+
+    /**
+     * Get products of a brand
+     */
+    Page<ProductListResponse> getProductsByBrand(Integer brandId, Pageable pageable);
+
+    /**
+     * Get featured products
+     */
+    Page<ProductListResponse> getFeaturedProducts(Pageable pageable);
+
+    /**
+     * Get new products
+     */
+    Page<ProductListResponse> getNewProducts(Pageable pageable);
+
+    /**
+     * Get products on sale
+     */
+    Page<ProductListResponse> getOnSaleProducts(Pageable pageable);
+
+    /**
+     * Get products with available stock
+     */
+    Page<ProductListResponse> getProductsInStock(Pageable pageable);
+
+    /**
+     * Get best sellers (by total sold)
+     */
+    Page<ProductListResponse> getBestSellers(Pageable pageable);
+
+    /**
+     * Get popular products (by view count)
+     */
+    Page<ProductListResponse> getPopularProducts(Pageable pageable);
+
+    // ========== Filter options ==========
+
+    /**
+     * Sidebar facets for the current filter: product counts per brand, collection, topic,
+     * color, size and gender plus the price range
+     */
+    FilterOptionsResponse getFilterOptions(ProductFilterRequest filter);
+}
@@ -0,0 +1,14 @@
+package com.thacbao.neki.services;
+
+public interface ProductViewCounter {
+
+    /**
+     * Count one product page view. Buffered in memory and written on the next flush.
+     */
+    void recordView(Integer productId);
+
+    /**
+     * Write all buffered views to the database
+     */
+    void flush();
+}
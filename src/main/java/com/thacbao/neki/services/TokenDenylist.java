@@ -0,0 +1,22 @@
+package com.thacbao.neki.services;
+
+import com.thacbao.neki.security.VerifiedClaims;
+
+public interface TokenDenylist {
+
+    /**
+     * Reject every access token of the user issued up to now. Takes effect on this node
+     * after the current transaction commits and on other nodes at their next refresh.
+     */
+    void revokeUser(Integer userId);
+
+    /**
+     * Whether the token was issued before a revocation of its user
+     */
+    boolean isRevoked(VerifiedClaims claims);
+
+    /**
+     * Pull revocations written since the last refresh, and drop those older than any live token
+     */
+    void refresh();
+}
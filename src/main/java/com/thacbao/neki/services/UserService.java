@@ -46,4 +46,6 @@ public interface UserService {
     TokenResponse refreshToken(String refreshToken, String deviceInfo, String ipAddress);
     void logout(String refreshToken);
     long countActiveVerifiedUsers();
+
+    void clearExpiredOtps();
 }
\ No newline at end of file
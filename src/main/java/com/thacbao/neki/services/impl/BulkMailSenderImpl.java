@@ -0,0 +1,138 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.services.BulkMailSender;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives the SMTP transport directly instead of JavaMailSender.send, so one connection carries
+ * many messages, failures are attributed per message and sends can be paced one by one.
+ * The connection is replaced after messages-per-connection sends or any non-recipient error.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkMailSenderImpl implements BulkMailSender {
+
+    private final JavaMailSenderImpl mailSender;
+
+    @Value("${app.mail.bulk.messages-per-connection:100}")
+    private int messagesPerConnection;
+
+    // 0 disables pacing
+    @Value("${app.mail.bulk.rate-per-second:0}")
+    private double ratePerSecond;
+
+    // Earliest System.nanoTime() the next message may go out, shared by every sender thread
+    private final AtomicLong nextSendAt = new AtomicLong(System.nanoTime());
+
+    @Override
+    public Map<MimeMessage, Exception> send(List<MimeMessage> messages) {
+        Map<MimeMessage, Exception> failed = new IdentityHashMap<>();
+        Transport transport = null;
+        int sentOnConnection = 0;
+
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                MimeMessage message = messages.get(i);
+
+                // No liveness probe per message: a dropped connection fails that send and is replaced below
+                if (transport == null || sentOnConnection >= messagesPerConnection) {
+                    close(transport);
+                    transport = null;
+                    try {
+                        transport = connect();
+                        sentOnConnection = 0;
+                    } catch (MessagingException e) {
+                        // The server is unreachable, every remaining message fails the same way
+                        failRemaining(messages, i, e, failed);
+                        break;
+                    }
+                }
+
+                try {
+                    awaitSendSlot();
+                    if (message.getSentDate() == null) {
+                        message.setSentDate(new Date());
+                    }
+                    message.saveChanges();
+                    transport.sendMessage(message, message.getAllRecipients());
+                    sentOnConnection++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failRemaining(messages, i, e, failed);
+                    break;
+                } catch (SendFailedException e) {
+                    failed.put(message, e);
+                    // Rejected recipients leave the connection usable; without any, it broke mid-send
+                    if (e.getInvalidAddresses() == null || e.getInvalidAddresses().length == 0) {
+                        close(transport);
+                        transport = null;
+                    }
+                } catch (MessagingException e) {
+                    failed.put(message, e);
+                    close(transport);
+                    transport = null;
+                }
+            }
+        } finally {
+            close(transport);
+        }
+
+        log.debug("Bulk send of {} messages finished with {} failures", messages.size(), failed.size());
+        return failed;
+    }
+
+    // Helper methods
+    private Transport connect() throws MessagingException {
+        Transport transport = mailSender.getSession().getTransport(
+                mailSender.getProtocol() != null ? mailSender.getProtocol() : "smtp");
+        transport.connect(mailSender.getHost(), mailSender.getPort(), mailSender.getUsername(), mailSender.getPassword());
+        return transport;
+    }
+
+    private void awaitSendSlot() throws InterruptedException {
+        if (ratePerSecond <= 0) {
+            return;
+        }
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        long now = System.nanoTime();
+        long slot = nextSendAt.getAndUpdate(next -> Math.max(next, now) + interval);
+        long wait = Math.max(slot, now) - now;
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    private static void failRemaining(List<MimeMessage> messages, int from, Exception cause,
+                                      Map<MimeMessage, Exception> failed) {
+        for (int i = from; i < messages.size(); i++) {
+            failed.put(messages.get(i), cause);
+        }
+    }
+
+    private static void close(Transport transport) {
+        if (transport == null) {
+            return;
+        }
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Failed to close SMTP connection: {}", e.getMessage());
+        }
+    }
+}
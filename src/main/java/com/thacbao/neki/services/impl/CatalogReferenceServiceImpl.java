@@ -0,0 +1,211 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.configurations.CacheConfig;
+import com.thacbao.neki.dto.response.*;
+import com.thacbao.neki.events.CatalogCacheBroadcaster;
+import com.thacbao.neki.events.CatalogReferenceChangedEvent;
+import com.thacbao.neki.repositories.*;
+import com.thacbao.neki.services.CatalogReferenceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+
+/**
+ * Catalog reference data served from the Caffeine caches in CacheConfig. Lookups by many ids
+ * load all misses with one query. Entries are evicted after the transaction that wrote the
+ * entity commits, locally and on other nodes through CatalogCacheBroadcaster; a load that
+ * overlapped an eviction evicts its own result again.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class CatalogReferenceServiceImpl implements CatalogReferenceService {
+
+    private final CacheManager cacheManager;
+    private final CatalogCacheBroadcaster cacheBroadcaster;
+    private final BrandRepository brandRepository;
+    private final ColorRepository colorRepository;
+    private final SizeRepository sizeRepository;
+    private final CategoryRepository categoryRepository;
+    private final SubCategoryRepository subCategoryRepository;
+    private final TopicRepository topicRepository;
+    private final CollectionRepository collectionRepository;
+
+    // Bumped before every eviction, so a load that overlapped one can tell its result may be stale
+    private final Map<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    @Override
+    public BrandResponse getBrand(Integer id) {
+        return getBrands(List.of(id)).get(id);
+    }
+
+    @Override
+    public ColorResponse getColor(Integer id) {
+        return getColors(List.of(id)).get(id);
+    }
+
+    @Override
+    public SizeResponse getSize(Integer id) {
+        return getSizes(List.of(id)).get(id);
+    }
+
+    @Override
+    public CategoryResponse getCategory(Integer id) {
+        return lookup(CacheConfig.CATEGORIES, CategoryResponse.class, List.of(id), misses ->
+                toMap(categoryRepository.findAllById(misses), CategoryResponse::from, CategoryResponse::getId),
+                category -> category.toBuilder().build()).get(id);
+    }
+
+    @Override
+    public SubCategoryResponse getSubCategory(Integer id) {
+        return getSubCategories(List.of(id)).get(id);
+    }
+
+    @Override
+    public TopicResponse getTopic(Integer id) {
+        return getTopics(List.of(id)).get(id);
+    }
+
+    @Override
+    public CollectionResponse getCollection(Integer id) {
+        return getCollections(List.of(id)).get(id);
+    }
+
+    @Override
+    public Map<Integer, BrandResponse> getBrands(Collection<Integer> ids) {
+        return lookup(CacheConfig.BRANDS, BrandResponse.class, ids, misses ->
+                toMap(brandRepository.findAllById(misses), BrandResponse::from, BrandResponse::getId),
+                brand -> brand.toBuilder().build());
+    }
+
+    @Override
+    public Map<Integer, ColorResponse> getColors(Collection<Integer> ids) {
+        return lookup(CacheConfig.COLORS, ColorResponse.class, ids, misses ->
+                toMap(colorRepository.findAllById(misses), ColorResponse::from, ColorResponse::getId),
+                color -> color.toBuilder().build());
+    }
+
+    @Override
+    public Map<Integer, SizeResponse> getSizes(Collection<Integer> ids) {
+        return lookup(CacheConfig.SIZES, SizeResponse.class, ids, misses ->
+                toMap(sizeRepository.findAllById(misses), SizeResponse::from, SizeResponse::getId),
+                size -> size.toBuilder().build());
+    }
+
+    @Override
+    public Map<Integer, TopicResponse> getTopics(Collection<Integer> ids) {
+        return lookup(CacheConfig.TOPICS, TopicResponse.class, ids, misses ->
+                toMap(topicRepository.findAllById(misses), TopicResponse::from, TopicResponse::getId),
+                topic -> topic.toBuilder().build());
+    }
+
+    @Override
+    public Map<Integer, CollectionResponse> getCollections(Collection<Integer> ids) {
+        return lookup(CacheConfig.COLLECTIONS, CollectionResponse.class, ids, misses ->
+                toMap(collectionRepository.findAllById(misses), CollectionResponse::from, CollectionResponse::getId),
+                collection -> collection.toBuilder().build());
+    }
+
+    @Override
+    public Map<Integer, SubCategoryResponse> getSubCategories(Collection<Integer> ids) {
+        return lookup(CacheConfig.SUB_CATEGORIES, SubCategoryResponse.class, ids, misses ->
+                toMap(subCategoryRepository.findAllWithCategoryByIdIn(misses), SubCategoryResponse::from, SubCategoryResponse::getId),
+                subCategory -> subCategory.toBuilder().build());
+    }
+
+    @Override
+    public void evict(String cacheName, Integer id) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            generation(cacheName).incrementAndGet();
+            cache.evict(id);
+        }
+    }
+
+    // Runs before other listeners of the event, which rebuild read models from this cache
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onReferenceChanged(CatalogReferenceChangedEvent event) {
+        evict(event.cacheName(), event.id());
+
+        // Sub-category entries carry their category's name
+        if (CacheConfig.CATEGORIES.equals(event.cacheName())) {
+            Cache subCategories = cacheManager.getCache(CacheConfig.SUB_CATEGORIES);
+            if (subCategories != null) {
+                generation(CacheConfig.SUB_CATEGORIES).incrementAndGet();
+                subCategories.clear();
+            }
+        }
+
+        if (!event.remote()) {
+            try {
+                cacheBroadcaster.broadcast(event);
+            } catch (Exception e) {
+                // Other nodes fall back to the cache TTL
+                log.error("Failed to broadcast cache invalidation {}: {}", event, e.getMessage());
+            }
+        }
+    }
+
+    // Helper methods
+
+    /**
+     * Cached values by id, loading misses in one call. Callers get copies, so a caller that
+     * modifies a response cannot corrupt the shared entry.
+     */
+    private <T> Map<Integer, T> lookup(String cacheName, Class<T> type, Collection<Integer> ids,
+                                       Function<List<Integer>, Map<Integer, T>> loader, UnaryOperator<T> copy) {
+        Cache cache = cacheManager.getCache(cacheName);
+        Map<Integer, T> result = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+
+        for (Integer id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            T cached = cache.get(id, type);
+            if (cached != null) {
+                result.put(id, copy.apply(cached));
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long generation = generation(cacheName).get();
+            loader.apply(misses).forEach((id, value) -> {
+                cache.put(id, value);
+                result.put(id, copy.apply(value));
+            });
+            // An eviction during the load may have run before our put; drop what may be stale
+            if (generation(cacheName).get() != generation) {
+                misses.forEach(cache::evict);
+            }
+        }
+        return result;
+    }
+
+    private AtomicLong generation(String cacheName) {
+        return generations.computeIfAbsent(cacheName, name -> new AtomicLong());
+    }
+
+    private <E, T> Map<Integer, T> toMap(List<E> entities, Function<E, T> mapper, Function<T, Integer> idOf) {
+        return entities.stream()
+                .map(mapper)
+                .collect(Collectors.toMap(idOf, Function.identity()));
+    }
+}
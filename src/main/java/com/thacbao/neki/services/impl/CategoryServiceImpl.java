@@ -0,0 +1,496 @@
+package com.thacbao.neki.services.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.thacbao.neki.configurations.CacheConfig;
+import com.thacbao.neki.dto.request.product.CategoryRequest;
+import com.thacbao.neki.dto.request.product.SubCategoryRequest;
+import com.thacbao.neki.dto.response.ApiResponse;
+import com.thacbao.neki.dto.response.CategoryResponse;
+import com.thacbao.neki.dto.response.SubCategoryResponse;
+import com.thacbao.neki.events.CatalogReferenceChangedEvent;
+import com.thacbao.neki.events.ProductChangeTracker;
+import com.thacbao.neki.exceptions.common.AlreadyException;
+import com.thacbao.neki.exceptions.common.InvalidException;
+import com.thacbao.neki.exceptions.common.NotFoundException;
+import com.thacbao.neki.model.Category;
+import com.thacbao.neki.model.SubCategory;
+import com.thacbao.neki.repositories.CategoryRepository;
+import com.thacbao.neki.repositories.ProductRepository;
+import com.thacbao.neki.repositories.SubCategoryRepository;
+import com.thacbao.neki.services.CategoryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Categories and sub-categories. The active hierarchy is assembled in memory from one
+ * sub-category query and kept serialized as JSON bytes, so the hierarchy endpoint writes
+ * the same array on every hit. The tree is dropped whenever a category or sub-category
+ * commits a change (CatalogReferenceChangedEvent, local or remote) and rebuilt on the next read.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class CategoryServiceImpl implements CategoryService {
+
+    private static final TypeReference<ApiResponse<List<CategoryResponse>>> TREE_TYPE = new TypeReference<>() {
+    };
+
+    private final CategoryRepository categoryRepository;
+    private final SubCategoryRepository subCategoryRepository;
+    private final ProductRepository productRepository;
+    private final ProductChangeTracker productChangeTracker;
+    private final ObjectMapper objectMapper;
+
+    // Bumped on every invalidation; a tree built against an older version is never served
+    private final AtomicLong treeVersion = new AtomicLong();
+    private final Object treeLock = new Object();
+    private volatile CategoryTree tree;
+
+    private record CategoryTree(long version, byte[] json) {
+    }
+
+    // ========== Category CRUD ==========
+
+    @Override
+    public CategoryResponse createCategory(CategoryRequest request) {
+        if (categoryRepository.existsByName(request.getName())) {
+            throw new AlreadyException("Tên danh mục đã tồn tại");
+        }
+
+        Category category = Category.builder()
+                .name(request.getName())
+                .slug(uniqueSlug(request.getName(), categoryRepository::existsBySlug))
+                .description(request.getDescription())
+                .displayOrder(request.getDisplayOrder() != null ? request.getDisplayOrder() : 0)
+                .isActive(request.getIsActive() != null ? request.getIsActive() : true)
+                .build();
+
+        category = categoryRepository.save(category);
+        log.info("Category created: {}", category.getSlug());
+        return CategoryResponse.from(category);
+    }
+
+    @Override
+    public CategoryResponse updateCategory(Integer id, CategoryRequest request) {
+        Category category = findCategory(id);
+
+        if (request.getName() != null && !request.getName().equals(category.getName())) {
+            if (categoryRepository.existsByName(request.getName())) {
+                throw new AlreadyException("Tên danh mục đã tồn tại");
+            }
+            category.setName(request.getName());
+            category.setSlug(uniqueSlug(request.getName(), categoryRepository::existsBySlug));
+        }
+        if (request.getDescription() != null) {
+            category.setDescription(request.getDescription());
+        }
+        if (request.getDisplayOrder() != null) {
+            category.setDisplayOrder(request.getDisplayOrder());
+        }
+        if (request.getIsActive() != null) {
+            category.setIsActive(request.getIsActive());
+        }
+
+        return CategoryResponse.from(categoryRepository.save(category));
+    }
+
+    @Override
+    public void deleteCategory(Integer id) {
+        Category category = findCategory(id);
+
+        // Sub-categories cascade to their products, so refuse rather than delete products
+        if (productRepository.existsBySubCategory_Category_Id(id)) {
+            throw new InvalidException("Không thể xóa danh mục đang có sản phẩm");
+        }
+
+        categoryRepository.delete(category);
+        log.info("Category deleted: {}", category.getSlug());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CategoryResponse getCategoryById(Integer id) {
+        return CategoryResponse.from(findCategory(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CategoryResponse getCategoryBySlug(String slug) {
+        return categoryRepository.findBySlug(slug)
+                .map(CategoryResponse::from)
+                .orElseThrow(() -> new NotFoundException("Danh mục không tồn tại"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CategoryResponse> getAllCategories() {
+        return categoryRepository.findAll().stream()
+                .sorted(Comparator.comparing(Category::getDisplayOrder))
+                .map(CategoryResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CategoryResponse> getAllCategoriesWithHierarchy() {
+        // Read back from the cached bytes so callers get their own copy of the tree
+        try {
+            ApiResponse<List<CategoryResponse>> response = objectMapper.readValue(getCategoryHierarchyJson(), TREE_TYPE);
+            return response.getData();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cached category tree is not readable", e);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public byte[] getCategoryHierarchyJson() {
+        CategoryTree current = tree;
+        if (current != null && current.version() == treeVersion.get()) {
+            return current.json();
+        }
+
+        synchronized (treeLock) {
+            current = tree;
+            long version = treeVersion.get();
+            if (current == null || current.version() != version) {
+                current = new CategoryTree(version, serialize(buildTree()));
+                tree = current;
+                log.debug("Category tree rebuilt ({} bytes)", current.json().length);
+            }
+            return current.json();
+        }
+    }
+
+    @Override
+    public void reorderCategories(List<Integer> categoryIds) {
+        Map<Integer, Category> categories = categoryRepository.findAllById(categoryIds).stream()
+                .collect(Collectors.toMap(Category::getId, c -> c));
+
+        for (int i = 0; i < categoryIds.size(); i++) {
+            Category category = categories.get(categoryIds.get(i));
+            if (category == null) {
+                throw new NotFoundException("Danh mục không tồn tại");
+            }
+            category.setDisplayOrder(i);
+        }
+    }
+
+    // ========== SubCategory CRUD ==========
+
+    @Override
+    public SubCategoryResponse createSubCategory(SubCategoryRequest request) {
+        Category category = findCategory(request.getCategoryId());
+        SubCategory parent = request.getParentId() != null ? findSubCategory(request.getParentId()) : null;
+
+        if (parent != null && !parent.getCategory().getId().equals(category.getId())) {
+            throw new InvalidException("Danh mục cha không thuộc danh mục này");
+        }
+
+        SubCategory subCategory = SubCategory.builder()
+                .category(category)
+                .parent(parent)
+                .name(request.getName())
+                .slug(uniqueSlug(request.getName(), subCategoryRepository::existsBySlug))
+                .description(request.getDescription())
+                .level(parent != null ? parent.getLevel() + 1 : 1)
+                .displayOrder(request.getDisplayOrder() != null ? request.getDisplayOrder() : 0)
+                .isActive(request.getIsActive() != null ? request.getIsActive() : true)
+                .build();
+
+        subCategory = subCategoryRepository.save(subCategory);
+        subCategory.setPath(SubCategory.pathOf(parent, subCategory.getId()));
+        log.info("Sub-category created: {}", subCategory.getSlug());
+        return SubCategoryResponse.from(subCategory);
+    }
+
+    @Override
+    public SubCategoryResponse updateSubCategory(Integer id, SubCategoryRequest request) {
+        SubCategory subCategory = findSubCategory(id);
+
+        if (request.getName() != null && !request.getName().equals(subCategory.getName())) {
+            subCategory.setName(request.getName());
+            subCategory.setSlug(uniqueSlug(request.getName(), subCategoryRepository::existsBySlug));
+        }
+        if (request.getDescription() != null) {
+            subCategory.setDescription(request.getDescription());
+        }
+        if (request.getDisplayOrder() != null) {
+            subCategory.setDisplayOrder(request.getDisplayOrder());
+        }
+        if (request.getIsActive() != null) {
+            subCategory.setIsActive(request.getIsActive());
+        }
+
+        Integer currentParentId = subCategory.getParent() != null ? subCategory.getParent().getId() : null;
+        boolean categoryChanged = request.getCategoryId() != null
+                && !request.getCategoryId().equals(subCategory.getCategory().getId());
+        boolean parentChanged = !Objects.equals(request.getParentId(), currentParentId);
+        if (categoryChanged || parentChanged) {
+            move(subCategory, request.getCategoryId() != null ? request.getCategoryId() : subCategory.getCategory().getId(),
+                    request.getParentId());
+        }
+
+        return SubCategoryResponse.from(subCategoryRepository.save(subCategory));
+    }
+
+    @Override
+    public void deleteSubCategory(Integer id) {
+        SubCategory subCategory = findSubCategory(id);
+
+        // Children and products cascade from a sub-category, so refuse rather than delete products
+        List<Integer> subtreeIds = subtreeOf(subCategory).stream().map(SubCategory::getId).toList();
+        if (productRepository.existsBySubCategory_IdIn(subtreeIds)) {
+            throw new InvalidException("Không thể xóa danh mục con đang có sản phẩm");
+        }
+
+        subCategoryRepository.delete(subCategory);
+        log.info("Sub-category deleted: {}", subCategory.getSlug());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SubCategoryResponse getSubCategoryById(Integer id) {
+        return SubCategoryResponse.from(findSubCategory(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public SubCategoryResponse getSubCategoryBySlug(String slug) {
+        return subCategoryRepository.findBySlug(slug)
+                .map(SubCategoryResponse::from)
+                .orElseThrow(() -> new NotFoundException("Danh mục con không tồn tại"));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SubCategoryResponse> getSubCategoriesByCategory(Integer categoryId) {
+        return subCategoryRepository.findRootSubCategoriesByCategory(findCategory(categoryId)).stream()
+                .map(SubCategoryResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SubCategoryResponse> getSubCategoryHierarchy(Integer categoryId) {
+        Optional<CategoryResponse> category = getAllCategoriesWithHierarchy().stream()
+                .filter(c -> c.getId().equals(categoryId))
+                .findFirst();
+        if (category.isPresent()) {
+            return category.get().getSubCategories();
+        }
+
+        // Inactive categories are not part of the tree
+        if (!categoryRepository.existsById(categoryId)) {
+            throw new NotFoundException("Danh mục không tồn tại");
+        }
+        return List.of();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<SubCategoryResponse> getSubCategoryChildren(Integer parentId) {
+        return subCategoryRepository.findChildrenByParent(findSubCategory(parentId)).stream()
+                .map(SubCategoryResponse::from)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void reorderSubCategories(Integer parentId, List<Integer> subCategoryIds) {
+        Map<Integer, SubCategory> subCategories = subCategoryRepository.findAllById(subCategoryIds).stream()
+                .collect(Collectors.toMap(SubCategory::getId, sc -> sc));
+
+        Integer categoryId = null;
+        for (int i = 0; i < subCategoryIds.size(); i++) {
+            SubCategory subCategory = subCategories.get(subCategoryIds.get(i));
+            if (subCategory == null) {
+                throw new NotFoundException("Danh mục con không tồn tại");
+            }
+
+            Integer currentParentId = subCategory.getParent() != null ? subCategory.getParent().getId() : null;
+            if (categoryId == null) {
+                categoryId = subCategory.getCategory().getId();
+            }
+            if (!Objects.equals(currentParentId, parentId) || !categoryId.equals(subCategory.getCategory().getId())) {
+                throw new InvalidException("Các danh mục con phải cùng một danh mục cha");
+            }
+            subCategory.setDisplayOrder(i);
+        }
+    }
+
+    /**
+     * Fill in materialized paths missing on existing rows (or left inconsistent), before
+     * the read model and facet index rebuild on startup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillPaths() {
+        Map<Integer, String> paths = new HashMap<>();
+        int updated = 0;
+        for (SubCategory subCategory : subCategoryRepository.findAll()) {
+            String path = pathOf(subCategory, paths);
+            if (!path.equals(subCategory.getPath())) {
+                subCategory.setPath(path);
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            log.info("Backfilled materialized path of {} sub-categories", updated);
+        }
+    }
+
+    @EventListener
+    public void onReferenceChanged(CatalogReferenceChangedEvent event) {
+        if (CacheConfig.CATEGORIES.equals(event.cacheName()) || CacheConfig.SUB_CATEGORIES.equals(event.cacheName())) {
+            treeVersion.incrementAndGet();
+            tree = null;
+        }
+    }
+
+    // Helper methods
+    private Category findCategory(Integer id) {
+        return categoryRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Danh mục không tồn tại"));
+    }
+
+    private SubCategory findSubCategory(Integer id) {
+        return subCategoryRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Danh mục con không tồn tại"));
+    }
+
+    /**
+     * Active categories in display order, each with its active sub-category tree. Sub-categories
+     * under an inactive parent are left out, like fromWithChildren does.
+     */
+    private List<CategoryResponse> buildTree() {
+        List<Category> categories = categoryRepository.findAllActiveOrderByDisplayOrder();
+        Map<Integer, List<SubCategoryResponse>> roots = new HashMap<>();
+        Map<Integer, List<SubCategoryResponse>> children = new HashMap<>();
+
+        for (SubCategory subCategory : subCategoryRepository.findAllActiveWithCategory()) {
+            SubCategoryResponse response = SubCategoryResponse.from(subCategory);
+            if (response.getParentId() == null) {
+                roots.computeIfAbsent(response.getCategoryId(), k -> new ArrayList<>()).add(response);
+            } else {
+                children.computeIfAbsent(response.getParentId(), k -> new ArrayList<>()).add(response);
+            }
+        }
+
+        List<CategoryResponse> result = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            CategoryResponse response = CategoryResponse.from(category);
+            response.setSubCategories(attachChildren(roots.getOrDefault(category.getId(), new ArrayList<>()), children));
+            result.add(response);
+        }
+        return result;
+    }
+
+    private List<SubCategoryResponse> attachChildren(List<SubCategoryResponse> level,
+                                                     Map<Integer, List<SubCategoryResponse>> children) {
+        level.sort(Comparator.comparing(SubCategoryResponse::getDisplayOrder));
+        for (SubCategoryResponse node : level) {
+            List<SubCategoryResponse> nodeChildren = children.get(node.getId());
+            if (nodeChildren != null) {
+                node.setChildren(attachChildren(nodeChildren, children));
+            }
+        }
+        return level;
+    }
+
+    private byte[] serialize(List<CategoryResponse> categories) {
+        ApiResponse<List<CategoryResponse>> response = ApiResponse.<List<CategoryResponse>>builder()
+                .code(HttpStatus.OK.value())
+                .status("success")
+                .message("Lấy danh mục thành công")
+                .data(categories)
+                .build();
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize category tree", e);
+        }
+    }
+
+    /**
+     * Re-parent a sub-category, keeping its subtree consistent: no cycles, parent in the
+     * target category, and path, level and category updated on every descendant. Products
+     * in the subtree are marked changed so listings pick up the new path.
+     */
+    private void move(SubCategory subCategory, Integer categoryId, Integer parentId) {
+        Category category = findCategory(categoryId);
+        SubCategory parent = parentId != null ? findSubCategory(parentId) : null;
+        List<SubCategory> subtree = subtreeOf(subCategory);
+
+        if (parent != null) {
+            if (subtree.contains(parent)) {
+                throw new InvalidException("Không thể chuyển danh mục con vào chính nó hoặc danh mục con của nó");
+            }
+            if (!parent.getCategory().getId().equals(category.getId())) {
+                throw new InvalidException("Danh mục cha không thuộc danh mục này");
+            }
+        }
+
+        subCategory.setParent(parent);
+        // Parents come before their children, so each node derives from an already moved parent
+        for (SubCategory node : subtree) {
+            node.setCategory(category);
+            node.setLevel(node.getParent() != null ? node.getParent().getLevel() + 1 : 1);
+            node.setPath(SubCategory.pathOf(node.getParent(), node.getId()));
+        }
+
+        productRepository.findIdsBySubCategoryIds(subtree.stream().map(SubCategory::getId).toList())
+                .forEach(productChangeTracker::markChanged);
+    }
+
+    // The sub-category and all its descendants, parents first, from one prefix scan on the path index
+    private List<SubCategory> subtreeOf(SubCategory root) {
+        return subCategoryRepository.findByPathStartingWith(root.getPath()).stream()
+                .sorted(Comparator.comparing(SubCategory::getLevel))
+                .collect(Collectors.toList());
+    }
+
+    private String pathOf(SubCategory subCategory, Map<Integer, String> paths) {
+        String path = paths.get(subCategory.getId());
+        if (path == null) {
+            SubCategory parent = subCategory.getParent();
+            path = (parent != null ? pathOf(parent, paths) : "/") + subCategory.getId() + "/";
+            paths.put(subCategory.getId(), path);
+        }
+        return path;
+    }
+
+    private String uniqueSlug(String name, Predicate<String> exists) {
+        String base = toSlug(name);
+        String slug = base;
+        for (int i = 2; exists.test(slug); i++) {
+            slug = base + "-" + i;
+        }
+        return slug;
+    }
+
+    private String toSlug(String name) {
+        String slug = Normalizer.normalize(name.replace('đ', 'd').replace('Đ', 'D'), Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^a-z0-9]+", "-")
+                .replaceAll("(^-+|-+$)", "");
+        return slug.isEmpty() ? "danh-muc" : slug;
+    }
+}
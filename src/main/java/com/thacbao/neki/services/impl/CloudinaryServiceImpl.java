@@ -2,28 +2,54 @@ package com.thacbao.neki.services.impl;
 
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
+import com.thacbao.neki.dto.response.ImageUploadResult;
+import com.thacbao.neki.exceptions.ErrorCode;
+import com.thacbao.neki.exceptions.common.AppException;
 import com.thacbao.neki.exceptions.common.InvalidException;
 import com.thacbao.neki.services.CloudinaryService;
+import com.thacbao.neki.services.ImageProcessor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @Slf4j
 public class CloudinaryServiceImpl implements CloudinaryService {
 
     private final Cloudinary cloudinary;
+    private final ImageProcessor imageProcessor;
+    private final Duration uploadTimeout;
+
+    // One virtual thread per upload, the semaphore caps how many talk to Cloudinary at once
+    private final ExecutorService uploadExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore uploadPermits;
 
     public CloudinaryServiceImpl(
             @Value("${cloudinary.cloud-name}") String cloudName,
             @Value("${cloudinary.api-key}") String apiKey,
-            @Value("${cloudinary.api-secret}") String apiSecret) {
+            @Value("${cloudinary.api-secret}") String apiSecret,
+            @Value("${app.cloudinary.upload.max-concurrent:12}") int maxConcurrentUploads,
+            @Value("${app.cloudinary.upload.timeout:PT60S}") Duration uploadTimeout,
+            ImageProcessor imageProcessor) {
 
         this.cloudinary = new Cloudinary(ObjectUtils.asMap(
                 "cloud_name", cloudName,
@@ -31,48 +57,96 @@ public class CloudinaryServiceImpl implements CloudinaryService {
                 "api_secret", apiSecret,
                 "secure", true
         ));
+        this.uploadTimeout = uploadTimeout;
+        this.imageProcessor = imageProcessor;
+        this.uploadPermits = new Semaphore(maxConcurrentUploads);
 
         log.info("Cloudinary service initialized with cloud name: {}", cloudName);
     }
 
     @Override
     public String uploadImage(MultipartFile file, String folder) {
-        validateImage(file);
-
-        try {
-            Map uploadResult = cloudinary.uploader().upload(file.getBytes(),
-                    ObjectUtils.asMap(
-                            "folder", folder,
-                            "resource_type", "auto",
-                            "quality", "auto:good",
-                            "fetch_format", "auto"
-                    ));
+        ImageProcessor.Format format = validateImage(file);
+        return upload(file, format, folder, new AtomicBoolean());
+    }
 
-            String secureUrl = (String) uploadResult.get("secure_url");
-            log.info("Image uploaded successfully to: {}", secureUrl);
-            return secureUrl;
+    @Override
+    public List<String> uploadImages(List<MultipartFile> files, String folder) {
+        List<String> urls = new ArrayList<>();
 
-        } catch (IOException e) {
-            log.error("Failed to upload image: {}", e.getMessage(), e);
-            throw new InvalidException("Không thể upload ảnh: " + e.getMessage());
+        for (ImageUploadResult result : uploadImagesWithResults(files, folder)) {
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                urls.add(result.getUrl());
+            }
+            // Failed images are skipped, the rest are kept; a busy server fails the whole batch
         }
+
+        return urls;
     }
 
     @Override
-    public List<String> uploadImages(List<MultipartFile> files, String folder) {
-        List<String> urls = new ArrayList<>();
+    public List<ImageUploadResult> uploadImagesWithResults(List<MultipartFile> files, String folder) {
+        // One deadline for the whole batch, so a product form waits for at most uploadTimeout
+        long deadline = System.nanoTime() + uploadTimeout.toNanos();
 
+        List<UploadTask> tasks = new ArrayList<>();
         for (MultipartFile file : files) {
+            UploadTask task = new UploadTask();
+            task.future = uploadExecutor.submit(() -> {
+                long startedAt = System.nanoTime();
+                ImageProcessor.Format format = validateImage(file);
+                String url = upload(file, format, folder, task.claimed);
+                if (!task.claimed.compareAndSet(false, true)) {
+                    // The caller gave up on this upload, nobody will reference the asset
+                    log.warn("Image upload finished after timeout, deleting: {}", url);
+                    deleteImage(url);
+                }
+                return ImageUploadResult.builder()
+                        .fileName(file.getOriginalFilename())
+                        .success(true)
+                        .url(url)
+                        .durationMs(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt))
+                        .build();
+            });
+            tasks.add(task);
+        }
+
+        List<ImageUploadResult> results = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            MultipartFile file = files.get(i);
+            UploadTask task = tasks.get(i);
             try {
-                String url = uploadImage(file, folder);
-                urls.add(url);
-            } catch (Exception e) {
-                log.error("Failed to upload image: {}", file.getOriginalFilename(), e);
-                // Continue with other images
+                try {
+                    results.add(task.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+                } catch (TimeoutException e) {
+                    if (task.abandon()) {
+                        log.error("Image upload timed out: {}", file.getOriginalFilename());
+                        results.add(failed(file, "Quá thời gian upload ảnh"));
+                    } else {
+                        // Completed between the timeout and the claim, its result is about to be returned
+                        results.add(task.future.get());
+                    }
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof AppException cause && cause.getErrorCode() == ErrorCode.TOO_MANY_REQUESTS) {
+                    discard(results, tasks.subList(i + 1, tasks.size()));
+                    throw cause;
+                }
+                log.error("Failed to upload image: {}", file.getOriginalFilename(), e.getCause());
+                results.add(failed(file, e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                discard(results, tasks.subList(i, tasks.size()));
+                Thread.currentThread().interrupt();
+                throw new InvalidException("Upload ảnh bị gián đoạn");
             }
         }
 
-        return urls;
+        return results;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
     }
 
     @Override
@@ -138,8 +212,114 @@ public class CloudinaryServiceImpl implements CloudinaryService {
         }
     }
 
-    // Helper method to validate image file
-    private void validateImage(MultipartFile file) {
+    // Stream the upload from a temp file, the multipart body is never held on the heap.
+    // Skipped when abandoned is set while waiting for an upload slot.
+    private String upload(MultipartFile file, ImageProcessor.Format format, String folder, AtomicBoolean abandoned) {
+        Path tempFile = null;
+        Path processedFile = null;
+        try {
+            tempFile = Files.createTempFile("neki-upload-", ".tmp");
+            // Copies the part; the container deletes its own copy when the request ends
+            file.transferTo(tempFile);
+
+            // Resized and stripped locally before taking an upload slot
+            processedFile = imageProcessor.process(tempFile, format);
+
+            Map uploadResult;
+            uploadPermits.acquire();
+            try {
+                if (abandoned.get()) {
+                    throw new InvalidException("Quá thời gian upload ảnh");
+                }
+                uploadResult = cloudinary.uploader().upload(processedFile.toFile(),
+                        ObjectUtils.asMap(
+                                "folder", folder,
+                                "resource_type", "auto",
+                                "quality", "auto:good",
+                                "fetch_format", "auto"
+                        ));
+            } finally {
+                uploadPermits.release();
+            }
+
+            String secureUrl = (String) uploadResult.get("secure_url");
+            log.info("Image uploaded successfully to: {}", secureUrl);
+            return secureUrl;
+
+        } catch (IOException e) {
+            log.error("Failed to upload image: {}", e.getMessage(), e);
+            throw new InvalidException("Không thể upload ảnh: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InvalidException("Upload ảnh bị gián đoạn");
+        } finally {
+            deleteQuietly(processedFile);
+            deleteQuietly(tempFile);
+        }
+    }
+
+    // Gives up on the uploads of a batch that fails as a whole, deleting what was already stored
+    private void discard(List<ImageUploadResult> results, List<UploadTask> pending) {
+        for (ImageUploadResult result : results) {
+            if (Boolean.TRUE.equals(result.getSuccess())) {
+                deleteImage(result.getUrl());
+            }
+        }
+        for (UploadTask task : pending) {
+            if (!task.abandon()) {
+                // Already claimed by a finished upload, which is about to return its result
+                try {
+                    deleteImage(task.future.get().getUrl());
+                } catch (ExecutionException e) {
+                    // Nothing was stored
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while discarding uploads, assets may remain");
+                    return;
+                }
+            }
+        }
+    }
+
+    private ImageUploadResult failed(MultipartFile file, String error) {
+        return ImageUploadResult.builder()
+                .fileName(file.getOriginalFilename())
+                .success(false)
+                .error(error)
+                .build();
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete temp file: {}", path);
+        }
+    }
+
+    /**
+     * An upload of a batch. Whoever sets claimed first owns the result: the caller by giving up
+     * on it, or the upload by finishing first. An upload that loses deletes its own asset.
+     */
+    private static final class UploadTask {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<ImageUploadResult> future;
+
+        // Not interrupted: an upload cut off mid-request may still be stored without its URL reaching us
+        boolean abandon() {
+            if (!claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            future.cancel(false);
+            return true;
+        }
+    }
+
+    // Helper method to validate image file, returns the format read from its magic bytes
+    private ImageProcessor.Format validateImage(MultipartFile file) {
         if (file == null || file.isEmpty()) {
             throw new InvalidException("File ảnh không được để trống");
         }
@@ -150,16 +330,16 @@ public class CloudinaryServiceImpl implements CloudinaryService {
             throw new InvalidException("Kích thước file không được vượt quá 10MB");
         }
 
-        // Check file type
-        String contentType = file.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            throw new InvalidException("File phải là ảnh (jpg, png, webp, etc.)");
+        // Check file type from the content, the declared content type is client controlled
+        ImageProcessor.Format format;
+        try (InputStream in = file.getInputStream()) {
+            format = imageProcessor.detect(in);
+        } catch (IOException e) {
+            throw new InvalidException("Không thể đọc file ảnh");
         }
-
-        // Check allowed image types
-        List<String> allowedTypes = List.of("image/jpeg", "image/png", "image/webp", "image/jpg");
-        if (!allowedTypes.contains(contentType.toLowerCase())) {
+        if (format == null) {
             throw new InvalidException("Chỉ chấp nhận file ảnh định dạng: JPG, PNG, WEBP");
         }
+        return format;
     }
 }
\ No newline at end of file
@@ -0,0 +1,291 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.model.EmailOutbox;
+import com.thacbao.neki.repositories.EmailOutboxRepository;
+import com.thacbao.neki.services.BulkMailSender;
+import com.thacbao.neki.services.EmailOutboxDispatcher;
+import com.thacbao.neki.services.ExpiredRowPurger;
+import jakarta.activation.DataHandler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.ByteArrayDataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drains the email outbox. A coordinator thread claims due rows in batches and hands them to
+ * a fixed pool of workers, which send their share through BulkMailSender. Claimed rows
+ * are held for claim-timeout, so a send lost to a crash is retried by the next poll. Failed
+ * recipients are retried with exponential backoff until max-attempts, then marked FAILED.
+ * OTP and password reset emails are only sent within secret-expiry of being queued, and their
+ * params are cleared once the row is sent or failed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailOutboxDispatcherImpl implements EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final EmailTemplateRenderer emailTemplateRenderer;
+    private final JavaMailSender mailSender;
+    private final BulkMailSender bulkMailSender;
+    private final PlatformTransactionManager transactionManager;
+    private final ExpiredRowPurger expiredRowPurger;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.workers:4}")
+    private int workers;
+
+    @Value("${app.mail.outbox.batch-size:100}")
+    private int batchSize;
+
+    // Emails per worker task; each task sends its share through BulkMailSender
+    @Value("${app.mail.outbox.chunk-size:20}")
+    private int chunkSize;
+
+    @Value("${app.mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.initial-backoff:PT30S}")
+    private Duration initialBackoff;
+
+    @Value("${app.mail.outbox.max-backoff:PT1H}")
+    private Duration maxBackoff;
+
+    @Value("${app.mail.outbox.claim-timeout:PT5M}")
+    private Duration claimTimeout;
+
+    @Value("${app.mail.outbox.retention:P7D}")
+    private Duration retention;
+
+    // A code that arrives later than this is useless to the user
+    @Value("${app.mail.outbox.secret-expiry:PT10M}")
+    private Duration secretExpiry;
+
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "email-outbox-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Set while a drain is queued but not started, so bursts of wake-ups collapse into one
+    private final AtomicBoolean drainQueued = new AtomicBoolean();
+    private ExecutorService workerPool;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "email-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void wakeUp() {
+        if (!drainQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            coordinator.execute(() -> {
+                drainQueued.set(false);
+                try {
+                    drain();
+                } catch (Exception e) {
+                    log.error("Email outbox dispatch failed: {}", e.getMessage(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drainQueued.set(false);
+            log.debug("Email outbox dispatcher is shut down");
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.mail.outbox.poll-ms:5000}")
+    public void poll() {
+        wakeUp();
+    }
+
+    // Sent rows are only kept for troubleshooting; failed rows stay until handled
+    @Scheduled(cron = "${app.mail.outbox.purge-cron:0 45 2 * * ?}")
+    public void purge() {
+        expiredRowPurger.submit(ExpiredRowPurger.Spec.delete("email-outbox-purge", "email_outbox",
+                "status = 'SENT' AND sent_at < ?", LocalDateTime.now().minus(retention)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+        workerPool.shutdownNow();
+    }
+
+    // Helper methods
+    private void drain() throws InterruptedException {
+        while (!Thread.currentThread().isInterrupted()) {
+            List<EmailOutbox> claimed = claimBatch();
+            if (claimed.isEmpty()) {
+                return;
+            }
+
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int from = 0; from < claimed.size(); from += chunkSize) {
+                List<EmailOutbox> chunk = claimed.subList(from, Math.min(from + chunkSize, claimed.size()));
+                tasks.add(() -> {
+                    sendChunk(chunk);
+                    return null;
+                });
+            }
+            workerPool.invokeAll(tasks);
+
+            if (claimed.size() < batchSize) {
+                return;
+            }
+        }
+    }
+
+    private List<EmailOutbox> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Integer> claimedIds = new ArrayList<>();
+            for (Integer id : emailOutboxRepository.findDueIds(now, PageRequest.of(0, batchSize))) {
+                if (emailOutboxRepository.claim(id, now.plus(claimTimeout), now) > 0) {
+                    claimedIds.add(id);
+                }
+            }
+            return claimedIds.isEmpty() ? List.of() : emailOutboxRepository.findAllById(claimedIds);
+        });
+    }
+
+    private void sendChunk(List<EmailOutbox> chunk) {
+        Map<MimeMessage, EmailOutbox> byMessage = new IdentityHashMap<>();
+        for (EmailOutbox email : chunk) {
+            if (isExpired(email, LocalDateTime.now())) {
+                log.warn("Dropping {} email to {}, expired before it could be sent", email.getTemplate(), email.getRecipient());
+                giveUp(email, "Expired before it could be sent");
+                continue;
+            }
+            try {
+                byMessage.put(toMimeMessage(email), email);
+            } catch (Exception e) {
+                retryLater(email, e);
+            }
+        }
+        if (byMessage.isEmpty()) {
+            return;
+        }
+
+        List<Integer> sentIds = new ArrayList<>();
+        List<Integer> secretIds = new ArrayList<>();
+        Map<MimeMessage, Exception> failed = bulkMailSender.send(new ArrayList<>(byMessage.keySet()));
+        byMessage.forEach((message, email) -> {
+            Exception cause = failed.get(message);
+            if (cause != null) {
+                retryLater(email, cause);
+            } else {
+                sentIds.add(email.getId());
+                if (email.getTemplate().isSecret()) {
+                    secretIds.add(email.getId());
+                }
+            }
+        });
+
+        if (!sentIds.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                emailOutboxRepository.markSent(sentIds, LocalDateTime.now());
+                if (!secretIds.isEmpty()) {
+                    emailOutboxRepository.clearParams(secretIds);
+                }
+            });
+            log.info("Sent {} outbox emails", sentIds.size());
+        }
+    }
+
+    private MimeMessage toMimeMessage(EmailOutbox email) throws MessagingException {
+        EmailTemplateRenderer.RenderedEmail rendered = emailTemplateRenderer.render(email);
+
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(email.getRecipient());
+        helper.setSubject(rendered.subject());
+        // The rendered bytes become the body as is, without a round trip through String
+        message.setDataHandler(new DataHandler(new ByteArrayDataSource(rendered.html(), "text/html; charset=UTF-8")));
+        return message;
+    }
+
+    private void retryLater(EmailOutbox email, Exception cause) {
+        int attempts = email.getAttempts() + 1;
+        String error = cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+        if (error.length() > 500) {
+            error = error.substring(0, 500);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime nextAttemptAt = now.plus(backoff(attempts));
+        if (attempts >= maxAttempts || isExpired(email, nextAttemptAt)) {
+            log.error("Giving up on {} email to {} after {} attempts: {}",
+                    email.getTemplate(), email.getRecipient(), attempts, error);
+            giveUp(email, error);
+            return;
+        }
+
+        log.warn("Failed to send {} email to {}, attempt {}, retrying at {}: {}",
+                email.getTemplate(), email.getRecipient(), attempts, nextAttemptAt, error);
+        String lastError = error;
+        transactionTemplate.executeWithoutResult(tx ->
+                emailOutboxRepository.markFailed(email.getId(), EmailOutbox.Status.PENDING, nextAttemptAt, lastError));
+    }
+
+    private void giveUp(EmailOutbox email, String error) {
+        transactionTemplate.executeWithoutResult(tx -> {
+            emailOutboxRepository.markFailed(email.getId(), EmailOutbox.Status.FAILED, LocalDateTime.now(), error);
+            if (email.getTemplate().isSecret()) {
+                emailOutboxRepository.clearParams(List.of(email.getId()));
+            }
+        });
+    }
+
+    // Whether a secret-bearing email would reach the user too late at the given time
+    private boolean isExpired(EmailOutbox email, LocalDateTime at) {
+        return email.getTemplate().isSecret() && email.getCreatedAt() != null
+                && at.isAfter(email.getCreatedAt().plus(secretExpiry));
+    }
+
+    private Duration backoff(int attempts) {
+        return backoff(attempts, initialBackoff, maxBackoff);
+    }
+
+    // initial doubled per failed attempt, capped at max
+    static Duration backoff(int attempts, Duration initial, Duration max) {
+        Duration delay = initial.multipliedBy(1L << Math.min(Math.max(attempts, 1) - 1, 20));
+        return delay.compareTo(max) > 0 ? max : delay;
+    }
+}
@@ -0,0 +1,384 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.model.EmailOutbox;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Outbox templates, compiled once at startup into UTF-8 byte chunks separated by named slots.
+ * The application name and URL are folded into the chunks, so rendering only copies chunks
+ * and slot values into the sending thread's reusable buffer.
+ */
+@Component
+public class EmailTemplateRenderer {
+
+    // Grows to the largest email once per sender thread and is reset between renders
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER =
+            ThreadLocal.withInitial(() -> new ByteArrayOutputStream(16 * 1024));
+
+    @Value("${app.name:NEKI E-Commerce}")
+    private String appName;
+
+    @Value("${app.url:http://localhost:3000}")
+    private String appUrl;
+
+    private final Map<EmailOutbox.Template, CompiledTemplate> templates = new EnumMap<>(EmailOutbox.Template.class);
+
+    public record RenderedEmail(String subject, byte[] html) {
+    }
+
+    @PostConstruct
+    public void compile() {
+        Map<String, String> constants = Map.of("appName", appName, "appUrl", appUrl);
+        CompiledTemplate otp = CompiledTemplate.compile(OTP_TEMPLATE, constants);
+        templates.put(EmailOutbox.Template.OTP, otp);
+        templates.put(EmailOutbox.Template.PASSWORD_RESET, otp);
+        templates.put(EmailOutbox.Template.WELCOME, CompiledTemplate.compile(WELCOME_TEMPLATE, constants));
+        templates.put(EmailOutbox.Template.PASSWORD_CHANGED, CompiledTemplate.compile(PASSWORD_CHANGED_TEMPLATE, constants));
+        templates.put(EmailOutbox.Template.ACCOUNT_BLOCKED, CompiledTemplate.compile(ACCOUNT_BLOCKED_TEMPLATE, constants));
+        templates.put(EmailOutbox.Template.ORDER_CONFIRMATION, CompiledTemplate.compile(ORDER_CONFIRMATION_TEMPLATE, constants));
+    }
+
+    public RenderedEmail render(EmailOutbox email) {
+        Map<String, String> params = email.getParams();
+        String year = String.valueOf(Year.now().getValue());
+        String purpose = email.getTemplate() == EmailOutbox.Template.PASSWORD_RESET
+                ? "đặt lại mật khẩu"
+                : "xác thực tài khoản";
+
+        byte[] html = templates.get(email.getTemplate()).render(slot -> switch (slot) {
+            case "year" -> year;
+            case "purpose" -> purpose;
+            default -> params.get(slot);
+        });
+        return new RenderedEmail(subject(email.getTemplate(), params), html);
+    }
+
+    // Helper methods
+    private String subject(EmailOutbox.Template template, Map<String, String> params) {
+        return switch (template) {
+            case OTP -> "Xác thực tài khoản - " + appName;
+            case PASSWORD_RESET -> "Đặt lại mật khẩu - " + appName;
+            case WELCOME -> "Chào mừng đến với " + appName;
+            case PASSWORD_CHANGED -> "Mật khẩu đã được thay đổi - " + appName;
+            case ACCOUNT_BLOCKED -> "Tài khoản của bạn đã bị khóa - " + appName;
+            case ORDER_CONFIRMATION -> "Xác nhận đơn hàng #" + params.get("orderNumber") + " - " + appName;
+        };
+    }
+
+    /**
+     * Static chunks around {{name}} slots; chunks has one more entry than slots
+     */
+    static final class CompiledTemplate {
+
+        private final byte[][] chunks;
+        private final String[] slots;
+
+        private CompiledTemplate(byte[][] chunks, String[] slots) {
+            this.chunks = chunks;
+            this.slots = slots;
+        }
+
+        static CompiledTemplate compile(String source, Map<String, String> constants) {
+            List<byte[]> chunks = new ArrayList<>();
+            List<String> slots = new ArrayList<>();
+            StringBuilder chunk = new StringBuilder();
+
+            int position = 0;
+            while (true) {
+                int open = source.indexOf("{{", position);
+                if (open < 0) {
+                    chunk.append(source, position, source.length());
+                    break;
+                }
+                int close = source.indexOf("}}", open);
+                if (close < 0) {
+                    throw new IllegalStateException("Unclosed slot in email template at " + open);
+                }
+                chunk.append(source, position, open);
+
+                String name = source.substring(open + 2, close);
+                String constant = constants.get(name);
+                if (constant != null) {
+                    chunk.append(constant);
+                } else {
+                    chunks.add(chunk.toString().getBytes(StandardCharsets.UTF_8));
+                    chunk.setLength(0);
+                    slots.add(name);
+                }
+                position = close + 2;
+            }
+            chunks.add(chunk.toString().getBytes(StandardCharsets.UTF_8));
+
+            return new CompiledTemplate(chunks.toArray(new byte[0][]), slots.toArray(new String[0]));
+        }
+
+        byte[] render(Function<String, String> values) {
+            ByteArrayOutputStream out = BUFFER.get();
+            out.reset();
+            for (int i = 0; i < slots.length; i++) {
+                out.writeBytes(chunks[i]);
+                String value = values.apply(slots[i]);
+                if (value != null) {
+                    out.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            out.writeBytes(chunks[slots.length]);
+            return out.toByteArray();
+        }
+    }
+
+    private static final String OTP_TEMPLATE = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <meta charset="UTF-8">
+                    <meta name="viewport" content="width=device-width, initial-scale=1.0">
+                    <style>
+                        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
+                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                        .header { background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; padding: 30px; text-align: center; border-radius: 10px 10px 0 0; }
+                        .content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }
+                        .otp-box { background: white; border: 2px dashed #667eea; border-radius: 8px; padding: 20px; text-align: center; margin: 20px 0; }
+                        .otp-code { font-size: 32px; font-weight: bold; color: #667eea; letter-spacing: 8px; }
+                        .footer { text-align: center; margin-top: 20px; color: #666; font-size: 12px; }
+                        .warning { background: #fff3cd; border-left: 4px solid #ffc107; padding: 12px; margin: 20px 0; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <div class="header">
+                            <h1>{{appName}}</h1>
+                        </div>
+                        <div class="content">
+                            <p>Xin chào,</p>
+                            <p>Bạn đã yêu cầu {{purpose}}. Vui lòng sử dụng mã OTP bên dưới:</p>
+                            
+                            <div class="otp-box">
+                                <div class="otp-code">{{otp}}</div>
+                            </div>
+                            
+                            <div class="warning">
+                                <strong>Lưu ý:</strong> Mã OTP này có hiệu lực trong 10 phút. 
+                                Không chia sẻ mã này với bất kỳ ai!
+                            </div>
+                            
+                            <p>Nếu bạn không thực hiện yêu cầu này, vui lòng bỏ qua email này.</p>
+                            
+                            <p style="margin-top: 30px;">
+                                Trân trọng,<br>
+                                <strong>{{appName}} Team</strong>
+                            </p>
+                        </div>
+                        <div class="footer">
+                            <p>© {{year}} {{appName}}. All rights reserved.</p>
+                            <p>Email này được gửi tự động, vui lòng không trả lời.</p>
+                        </div>
+                    </div>
+                </body>
+                </html>
+                """;
+
+    private static final String WELCOME_TEMPLATE = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <meta charset="UTF-8">
+                    <style>
+                        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
+                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                        .header { background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; padding: 40px; text-align: center; border-radius: 10px 10px 0 0; }
+                        .content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }
+                        .button { display: inline-block; background: #667eea; color: white; padding: 12px 30px; text-decoration: none; border-radius: 5px; margin: 20px 0; }
+                        .features { background: white; border-radius: 8px; padding: 20px; margin: 20px 0; }
+                        .feature-item { padding: 10px 0; border-bottom: 1px solid #eee; }
+                        .footer { text-align: center; margin-top: 20px; color: #666; font-size: 12px; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <div class="header">
+                            <h1>chào mừng đến với {{appName}}!</h1>
+                        </div>
+                        <div class="content">
+                            <p>Xin chào <strong>{{fullName}}</strong>,</p>
+                            <p>Cảm ơn bạn đã đăng ký tài khoản tại {{appName}}. Chúng tôi rất vui khi có bạn!</p>
+                            
+                            <div class="features">
+                                <h3>✨ Với tài khoản của bạn, bạn có thể:</h3>
+                                <div class="feature-item">Mua sắm hàng nghìn sản phẩm thời trang</div>
+                                <div class="feature-item"> Lưu sản phẩm yêu thích</div>
+                                <div class="feature-item">Theo dõi đơn hàng dễ dàng</div>
+                                <div class="feature-item">Nhận ưu đãi độc quyền</div>
+                                <div class="feature-item">Đánh giá và review sản phẩm</div>
+                            </div>
+                            
+                            <div style="text-align: center;">
+                                <a href="{{appUrl}}" class="button">Bắt đầu mua sắm</a>
+                            </div>
+                            
+                            <p style="margin-top: 30px;">
+                                Nếu bạn có bất kỳ câu hỏi nào, đừng ngần ngại liên hệ với chúng tôi!
+                            </p>
+                            
+                            <p>
+                                Trân trọng,<br>
+                                <strong>{{appName}} Team</strong>
+                            </p>
+                        </div>
+                        <div class="footer">
+                            <p>© {{year}} {{appName}}. All rights reserved.</p>
+                        </div>
+                    </div>
+                </body>
+                </html>
+                """;
+
+    private static final String PASSWORD_CHANGED_TEMPLATE = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <meta charset="UTF-8">
+                    <style>
+                        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
+                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                        .header { background: #28a745; color: white; padding: 30px; text-align: center; border-radius: 10px 10px 0 0; }
+                        .content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }
+                        .alert { background: #fff3cd; border-left: 4px solid #ffc107; padding: 15px; margin: 20px 0; }
+                        .info-box { background: white; border-radius: 8px; padding: 15px; margin: 20px 0; }
+                        .footer { text-align: center; margin-top: 20px; color: #666; font-size: 12px; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <div class="header">
+                            <h1>🔐 Mật khẩu đã được thay đổi</h1>
+                        </div>
+                        <div class="content">
+                            <p>Xin chào <strong>{{fullName}}</strong>,</p>
+                            <p>Mật khẩu tài khoản của bạn đã được thay đổi thành công.</p>
+                            
+                            <div class="info-box">
+                                <strong>Thông tin thay đổi:</strong><br>
+                                Thời gian: {{changedAt}}<br>
+                            </div>
+                            
+                            <div class="alert">
+                                <strong>Bạn không thực hiện thao tác này?</strong><br>
+                                Vui lòng liên hệ với chúng tôi ngay lập tức để bảo vệ tài khoản của bạn.
+                            </div>
+                            
+                            <p style="margin-top: 30px;">
+                                Trân trọng,<br>
+                                <strong>{{appName}} Team</strong>
+                            </p>
+                        </div>
+                        <div class="footer">
+                            <p>© {{year}} {{appName}}. All rights reserved.</p>
+                        </div>
+                    </div>
+                </body>
+                </html>
+                """;
+
+    private static final String ACCOUNT_BLOCKED_TEMPLATE = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <meta charset="UTF-8">
+                    <style>
+                        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
+                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                        .header { background: #dc3545; color: white; padding: 30px; text-align: center; border-radius: 10px 10px 0 0; }
+                        .content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }
+                        .warning { background: #f8d7da; border-left: 4px solid #dc3545; padding: 15px; margin: 20px 0; }
+                        .footer { text-align: center; margin-top: 20px; color: #666; font-size: 12px; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <div class="header">
+                            <h1>🚫 Tài khoản đã bị khóa</h1>
+                        </div>
+                        <div class="content">
+                            <p>Xin chào <strong>{{fullName}}</strong>,</p>
+                            
+                            <div class="warning">
+                                <strong>Tài khoản của bạn đã bị khóa</strong><br>
+                                Tài khoản của bạn đã bị khóa bởi quản trị viên do vi phạm điều khoản sử dụng.
+                            </div>
+                            
+                            <p>Nếu bạn cho rằng đây là một nhầm lẫn, vui lòng liên hệ với bộ phận hỗ trợ của chúng tôi.</p>
+                            
+                            <p style="margin-top: 30px;">
+                                Trân trọng,<br>
+                                <strong>{{appName}} Team</strong>
+                            </p>
+                        </div>
+                        <div class="footer">
+                            <p>© {{year}} {{appName}}. All rights reserved.</p>
+                        </div>
+                    </div>
+                </body>
+                </html>
+                """;
+
+    private static final String ORDER_CONFIRMATION_TEMPLATE = """
+                <!DOCTYPE html>
+                <html>
+                <head>
+                    <meta charset="UTF-8">
+                    <style>
+                        body { font-family: Arial, sans-serif; line-height: 1.6; color: #333; }
+                        .container { max-width: 600px; margin: 0 auto; padding: 20px; }
+                        .header { background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; padding: 30px; text-align: center; border-radius: 10px 10px 0 0; }
+                        .content { background: #f9f9f9; padding: 30px; border-radius: 0 0 10px 10px; }
+                        .order-box { background: white; border-radius: 8px; padding: 20px; margin: 20px 0; }
+                        .button { display: inline-block; background: #667eea; color: white; padding: 12px 30px; text-decoration: none; border-radius: 5px; margin: 20px 0; }
+                        .footer { text-align: center; margin-top: 20px; color: #666; font-size: 12px; }
+                    </style>
+                </head>
+                <body>
+                    <div class="container">
+                        <div class="header">
+                            <h1>Đơn hàng đã được xác nhận!</h1>
+                        </div>
+                        <div class="content">
+                            <p>Cảm ơn bạn đã mua hàng tại {{appName}}!</p>
+                            
+                            <div class="order-box">
+                                <h3>Thông tin đơn hàng:</h3>
+                                <p><strong>Mã đơn hàng:</strong> #{{orderNumber}}</p>
+                                <p><strong>Tổng tiền:</strong> {{totalAmount}} VNĐ</p>
+                                <p><strong>Trạng thái:</strong> Đang xử lý</p>
+                            </div>
+                            
+                            <p>Chúng tôi đang xử lý đơn hàng của bạn và sẽ giao hàng trong thời gian sớm nhất.</p>
+                            
+                            <div style="text-align: center;">
+                                <a href="{{appUrl}}/orders/{{orderNumber}}" class="button">Xem chi tiết đơn hàng</a>
+                            </div>
+                            
+                            <p style="margin-top: 30px;">
+                                Trân trọng,<br>
+                                <strong>{{appName}} Team</strong>
+                            </p>
+                        </div>
+                        <div class="footer">
+                            <p>© {{year}} {{appName}}. All rights reserved.</p>
+                        </div>
+                    </div>
+                </body>
+                </html>
+                """;
+}
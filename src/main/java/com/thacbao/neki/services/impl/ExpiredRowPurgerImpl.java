@@ -0,0 +1,159 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.services.ExpiredRowPurger;
+import com.thacbao.neki.services.JobLeaseService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purges expirable rows without long locks: each chunk is one auto-committed statement over a
+ * primary key range of chunk-size ids, followed by a pause so replicas and other writers
+ * keep up. Runs on its own thread so the pauses never hold up the shared scheduler.
+ * Progress is published as purge.rows (counter), purge.progress (gauge, 0..1) and
+ * purge.duration (timer), tagged with the job name.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExpiredRowPurgerImpl implements ExpiredRowPurger {
+
+    private static final long FULL_RANGE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JobLeaseService jobLeaseService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.purge.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${app.purge.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${app.purge.lease:PT30M}")
+    private Duration leaseDuration;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "expired-row-purger");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    // Share of the id range covered by the current or last run, per job, in basis points
+    private final Map<String, AtomicLong> progress = new ConcurrentHashMap<>();
+
+    @Override
+    public void submit(Spec spec) {
+        if (!queued.add(spec.name())) {
+            log.debug("Purge {} already queued", spec.name());
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                run(spec);
+            } catch (Exception e) {
+                log.error("Purge {} failed: {}", spec.name(), e.getMessage(), e);
+            } finally {
+                queued.remove(spec.name());
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // Helper methods
+    private void run(Spec spec) throws InterruptedException {
+        if (!jobLeaseService.tryAcquire(spec.name(), leaseDuration)) {
+            log.info("Purge {} skipped, another node holds the lease", spec.name());
+            return;
+        }
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Counter rows = meterRegistry.counter("purge.rows", "job", spec.name());
+        AtomicLong covered = progressOf(spec.name());
+        long total = 0;
+
+        try {
+            Map<String, Object> bounds = jdbcTemplate.queryForMap("SELECT MIN(id) AS min_id, MAX(id) AS max_id FROM " + spec.table());
+            Number minId = (Number) bounds.get("min_id");
+            Number maxId = (Number) bounds.get("max_id");
+            if (minId == null || maxId == null) {
+                covered.set(FULL_RANGE);
+                return;
+            }
+
+            String statement = statementOf(spec);
+            long first = minId.longValue();
+            long last = maxId.longValue();
+            long renewAt = System.nanoTime() + leaseDuration.toNanos() / 2;
+            covered.set(0);
+
+            for (long from = first; from <= last; from += chunkSize) {
+                List<Object> args = new ArrayList<>(Arrays.asList(spec.params()));
+                args.add(0, from + chunkSize);
+                args.add(0, from);
+                int affected = jdbcTemplate.update(statement, args.toArray());
+
+                total += affected;
+                rows.increment(affected);
+                covered.set(FULL_RANGE * (Math.min(from + chunkSize, last + 1) - first) / (last + 1 - first));
+
+                if (System.nanoTime() > renewAt) {
+                    if (!jobLeaseService.tryAcquire(spec.name(), leaseDuration)) {
+                        log.warn("Purge {} lost its lease after {} rows, stopping", spec.name(), total);
+                        return;
+                    }
+                    renewAt = System.nanoTime() + leaseDuration.toNanos() / 2;
+                }
+                if (affected > 0 && pauseMs > 0) {
+                    Thread.sleep(pauseMs);
+                }
+            }
+            log.info("Purge {} finished: {} rows over ids {}..{}", spec.name(), total, first, last);
+        } finally {
+            sample.stop(meterRegistry.timer("purge.duration", "job", spec.name()));
+            jobLeaseService.release(spec.name());
+        }
+    }
+
+    private String statementOf(Spec spec) {
+        String range = " WHERE id >= ? AND id < ? AND (" + spec.condition() + ")";
+        if (spec.clearColumns().isEmpty()) {
+            return "DELETE FROM " + spec.table() + range;
+        }
+        return "UPDATE " + spec.table() + " SET "
+                + String.join(", ", spec.clearColumns().stream().map(column -> column + " = NULL").toList())
+                + range;
+    }
+
+    private AtomicLong progressOf(String name) {
+        return progress.computeIfAbsent(name, key -> {
+            AtomicLong covered = new AtomicLong();
+            Gauge.builder("purge.progress", covered, value -> (double) value.get() / FULL_RANGE)
+                    .tag("job", key)
+                    .register(meterRegistry);
+            return covered;
+        });
+    }
+}
@@ -0,0 +1,352 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.exceptions.ErrorCode;
+import com.thacbao.neki.exceptions.common.AppException;
+import com.thacbao.neki.exceptions.common.InvalidException;
+import com.thacbao.neki.services.ImageProcessor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shrinks images before they are uploaded. Decoding is subsampled close to the target size,
+ * so a large photo never needs its full resolution raster, and only pixels are written back,
+ * which drops EXIF, GPS and other metadata. Runs on a small pool sized for CPU work; a full
+ * queue is answered with 429. WebP has no ImageIO decoder here, so its EXIF and XMP chunks
+ * are dropped from the container instead. Images that cannot be decoded are refused.
+ */
+@Service
+@Slf4j
+public class ImageProcessorImpl implements ImageProcessor {
+
+    private static final byte[] JPEG_MAGIC = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_MAGIC = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] RIFF_MAGIC = "RIFF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP_MAGIC = "WEBP".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP_EXIF = "EXIF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP_XMP = "XMP ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] WEBP_VP8X = "VP8X".getBytes(StandardCharsets.US_ASCII);
+    // VP8X flags announcing the EXIF and XMP chunks
+    private static final int VP8X_METADATA_FLAGS = 0x08 | 0x04;
+
+    @Value("${app.image.max-dimension:2048}")
+    private int maxDimension;
+
+    // Larger images are refused before decoding
+    @Value("${app.image.max-pixels:50000000}")
+    private long maxPixels;
+
+    @Value("${app.image.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    // 0 means half the cores
+    @Value("${app.image.processing.threads:0}")
+    private int threads;
+
+    @Value("${app.image.processing.queue-size:32}")
+    private int queueSize;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "image-processor-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public Format detect(InputStream in) throws IOException {
+        byte[] header = in.readNBytes(12);
+        if (startsWith(header, 0, JPEG_MAGIC)) {
+            return Format.JPEG;
+        }
+        if (startsWith(header, 0, PNG_MAGIC)) {
+            return Format.PNG;
+        }
+        if (startsWith(header, 0, RIFF_MAGIC) && startsWith(header, 8, WEBP_MAGIC)) {
+            return Format.WEBP;
+        }
+        return null;
+    }
+
+    @Override
+    public Path process(Path source, Format format) {
+        Future<Path> future;
+        try {
+            future = executor.submit(() -> format == Format.WEBP ? stripWebp(source) : resize(source, format));
+        } catch (RejectedExecutionException e) {
+            throw new AppException(ErrorCode.TOO_MANY_REQUESTS, "Hệ thống đang bận, vui lòng thử lại sau");
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InvalidException("Xử lý ảnh bị gián đoạn");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof InvalidException cause) {
+                throw cause;
+            }
+            // Uploading the original would keep its metadata, e.g. a CMYK JPEG ImageIO cannot decode
+            log.warn("Image processing failed: {}", e.getCause().getMessage());
+            throw new InvalidException("Không thể xử lý file ảnh, vui lòng chọn ảnh khác");
+        }
+    }
+
+    // Helper methods
+    private Path resize(Path source, Format format) throws IOException {
+        int orientation = format == Format.JPEG ? exifOrientation(source) : 1;
+
+        BufferedImage decoded;
+        try (ImageInputStream in = ImageIO.createImageInputStream(source.toFile())) {
+            Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new InvalidException("Không thể đọc file ảnh");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new InvalidException("Độ phân giải ảnh quá lớn");
+                }
+
+                // Skip whole rows and columns while decoding, keeping at least twice the target size
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / (maxDimension * 2));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                decoded = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(decoded.getWidth(), decoded.getHeight()));
+        int drawWidth = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+        int drawHeight = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+        // Orientations 5 to 8 turn the image by 90 degrees
+        boolean swap = orientation >= 5 && orientation <= 8;
+        int targetWidth = swap ? drawHeight : drawWidth;
+        int targetHeight = swap ? drawWidth : drawHeight;
+
+        boolean keepAlpha = format == Format.PNG && decoded.getColorModel().hasAlpha();
+        BufferedImage target = new BufferedImage(targetWidth, targetHeight,
+                keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.transform(orientationTransform(orientation, targetWidth, targetHeight));
+            graphics.drawImage(decoded, 0, 0, drawWidth, drawHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        Path output = Files.createTempFile("neki-image-", format == Format.JPEG ? ".jpg" : ".png");
+        try {
+            write(target, format, output);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+
+        log.debug("Image processed to {}x{}, {} -> {} bytes",
+                targetWidth, targetHeight, Files.size(source), Files.size(output));
+        return output;
+    }
+
+    private Path stripWebp(Path source) throws IOException {
+        byte[] stripped = stripWebpMetadata(Files.readAllBytes(source));
+        Path output = Files.createTempFile("neki-image-", ".webp");
+        try {
+            Files.write(output, stripped);
+        } catch (IOException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+        return output;
+    }
+
+    /**
+     * Copy of a WebP RIFF container without its EXIF and XMP chunks, with the VP8X flags and
+     * the RIFF size adjusted to match. Pixel data and the colour profile are kept as is.
+     */
+    static byte[] stripWebpMetadata(byte[] data) {
+        if (!startsWith(data, 0, RIFF_MAGIC) || !startsWith(data, 8, WEBP_MAGIC)) {
+            throw new InvalidException("File ảnh không hợp lệ");
+        }
+        long end = 8L + (readInt(data, 4, true) & 0xFFFFFFFFL);
+        if (end > data.length) {
+            throw new InvalidException("File ảnh không hợp lệ");
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        out.write(data, 0, 12);
+        int position = 12;
+        while (position < end) {
+            if (position + 8 > end) {
+                throw new InvalidException("File ảnh không hợp lệ");
+            }
+            long size = readInt(data, position + 4, true) & 0xFFFFFFFFL;
+            if (position + 8 + size > end) {
+                throw new InvalidException("File ảnh không hợp lệ");
+            }
+            // Chunks are padded to an even size; the last pad byte may be missing
+            int chunkEnd = (int) Math.min(end, position + 8 + size + (size & 1));
+
+            if (!startsWith(data, position, WEBP_EXIF) && !startsWith(data, position, WEBP_XMP)) {
+                byte[] chunk = Arrays.copyOfRange(data, position, chunkEnd);
+                if (startsWith(chunk, 0, WEBP_VP8X) && size > 0) {
+                    chunk[8] &= (byte) ~VP8X_METADATA_FLAGS;
+                }
+                out.writeBytes(chunk);
+            }
+            position = chunkEnd;
+        }
+
+        byte[] stripped = out.toByteArray();
+        writeLittleEndianInt(stripped, 4, stripped.length - 8);
+        return stripped;
+    }
+
+    private void write(BufferedImage image, Format format, Path output) throws IOException {
+        if (format == Format.PNG) {
+            ImageIO.write(image, "png", output.toFile());
+            return;
+        }
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // Maps the stored image, drawn at the origin, onto a width x height canvas in display orientation
+    static AffineTransform orientationTransform(int orientation, int width, int height) {
+        return switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, width, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, width, height);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, height);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, width, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, width, height);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, height);
+            default -> new AffineTransform();
+        };
+    }
+
+    // EXIF orientation tag of a JPEG, 1 (as stored) when absent or unreadable
+    static int exifOrientation(Path jpeg) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(jpeg)))) {
+            if (in.readUnsignedShort() != 0xFFD8) {
+                return 1;
+            }
+            while (true) {
+                int marker = in.readUnsignedShort();
+                // EXIF comes before the image data
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+                    return 1;
+                }
+                int length = in.readUnsignedShort() - 2;
+                if (marker == 0xFFE1 && length > 14) {
+                    byte[] segment = new byte[length];
+                    in.readFully(segment);
+                    if (startsWith(segment, 0, "Exif\0\0".getBytes(StandardCharsets.US_ASCII))) {
+                        return tiffOrientation(segment, 6);
+                    }
+                } else {
+                    in.skipNBytes(length);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            return 1;
+        }
+    }
+
+    static int tiffOrientation(byte[] data, int tiffStart) {
+        boolean littleEndian = data[tiffStart] == 'I';
+        int ifd = tiffStart + readInt(data, tiffStart + 4, littleEndian);
+        int entries = readShort(data, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (readShort(data, entry, littleEndian) == 0x0112) {
+                return readShort(data, entry + 8, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int first = data[offset] & 0xFF;
+        int second = data[offset + 1] & 0xFF;
+        return littleEndian ? (second << 8) | first : (first << 8) | second;
+    }
+
+    private static int readInt(byte[] data, int offset, boolean littleEndian) {
+        int high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        int low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return (high << 16) | low;
+    }
+
+    private static void writeLittleEndianInt(byte[] data, int offset, int value) {
+        for (int i = 0; i < 4; i++) {
+            data[offset + i] = (byte) (value >>> (8 * i));
+        }
+    }
+
+    static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        return data.length >= offset + prefix.length
+                && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+}
@@ -0,0 +1,82 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.model.JobLease;
+import com.thacbao.neki.repositories.JobLeaseRepository;
+import com.thacbao.neki.services.JobLeaseService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Leases backed by the job_leases table. Each statement runs in its own short transaction,
+ * so a lease is visible to other nodes as soon as it is taken.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class JobLeaseServiceImpl implements JobLeaseService {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    // Identifies this instance as lease owner
+    private final String owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Override
+    public boolean tryAcquire(String name, Duration duration) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer taken = newTransaction().execute(status ->
+                jobLeaseRepository.tryTake(name, owner, now.plus(duration), now));
+        if (taken != null && taken > 0) {
+            return true;
+        }
+
+        // First run of this job anywhere: create the row, a concurrent creator wins on the primary key
+        try {
+            return Boolean.TRUE.equals(newTransaction().execute(status -> {
+                if (jobLeaseRepository.existsById(name)) {
+                    return false;
+                }
+                jobLeaseRepository.saveAndFlush(JobLease.builder()
+                        .name(name)
+                        .owner(owner)
+                        .leasedUntil(now.plus(duration))
+                        .build());
+                return true;
+            }));
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Lease {} created concurrently by another node", name);
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name) {
+        newTransaction().executeWithoutResult(status ->
+                jobLeaseRepository.release(name, owner, LocalDateTime.now()));
+    }
+
+    // Helper methods
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
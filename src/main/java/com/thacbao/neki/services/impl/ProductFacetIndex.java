@@ -0,0 +1,340 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.projection.ProductFacetDocument;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.model.Product;
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.IntConsumer;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * In-memory facet index over the active catalog: one compressed bitmap of product ids per
+ * filter value, plus price columns sorted by price. A filter is answered with bitmap AND/OR
+ * and only the final page of ids is sorted. Not thread safe, ProductFacetIndexServiceImpl
+ * guards it with a read/write lock.
+ */
+class ProductFacetIndex {
+
+    private final Map<Integer, ProductFacetDocument> documents = new HashMap<>();
+
+    private final RoaringBitmap all = new RoaringBitmap();
+    private final Map<Integer, RoaringBitmap> byCategory = new HashMap<>();
+    // A product is indexed under its own sub-category and every ancestor on its path
+    private final Map<Integer, RoaringBitmap> bySubCategory = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byBrand = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byCollection = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byTopic = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> byColor = new HashMap<>();
+    private final Map<Integer, RoaringBitmap> bySize = new HashMap<>();
+    private final Map<Product.Gender, RoaringBitmap> byGender = new EnumMap<>(Product.Gender.class);
+
+    private final RoaringBitmap featured = new RoaringBitmap();
+    private final RoaringBitmap newArrivals = new RoaringBitmap();
+    private final RoaringBitmap onSale = new RoaringBitmap();
+    private final RoaringBitmap inStock = new RoaringBitmap();
+
+    // Price columns: sale price null or zero, sale price, and sale-or-base current price
+    private final RoaringBitmap withoutSalePrice = new RoaringBitmap();
+    private final NavigableMap<BigDecimal, RoaringBitmap> bySalePrice = new TreeMap<>();
+    private final NavigableMap<BigDecimal, RoaringBitmap> byCurrentPrice = new TreeMap<>();
+
+    int size() {
+        return documents.size();
+    }
+
+    /**
+     * Index a product, replacing its previous document if any
+     */
+    void put(ProductFacetDocument document) {
+        remove(document.getId());
+
+        int id = document.getId();
+        documents.put(id, document);
+        all.add(id);
+
+        add(byCategory, document.getCategoryId(), id);
+        document.getSubCategoryAncestry().forEach(subCategoryId -> add(bySubCategory, subCategoryId, id));
+        add(byBrand, document.getBrandId(), id);
+        add(byGender, document.getGender(), id);
+        document.getCollectionIds().forEach(collectionId -> add(byCollection, collectionId, id));
+        document.getTopicIds().forEach(topicId -> add(byTopic, topicId, id));
+        document.getColorIds().forEach(colorId -> add(byColor, colorId, id));
+        document.getSizeIds().forEach(sizeId -> add(bySize, sizeId, id));
+
+        if (Boolean.TRUE.equals(document.getIsFeatured())) {
+            featured.add(id);
+        }
+        if (Boolean.TRUE.equals(document.getIsNew())) {
+            newArrivals.add(id);
+        }
+        if (document.isOnSale()) {
+            onSale.add(id);
+        }
+        if (document.isInStock()) {
+            inStock.add(id);
+        }
+
+        if (document.hasSalePrice()) {
+            add(bySalePrice, document.getSalePrice(), id);
+        } else {
+            withoutSalePrice.add(id);
+        }
+        add(byCurrentPrice, document.getCurrentPrice(), id);
+    }
+
+    /**
+     * Add to a product's view count; only a sort column changes, so no bitmap is touched
+     */
+    void addViewCount(Integer productId, long delta) {
+        ProductFacetDocument document = documents.get(productId);
+        if (document != null) {
+            long viewCount = document.getViewCount() != null ? document.getViewCount() : 0L;
+            documents.put(productId, document.toBuilder().viewCount(viewCount + delta).build());
+        }
+    }
+
+    void remove(Integer productId) {
+        ProductFacetDocument document = documents.remove(productId);
+        if (document == null) {
+            return;
+        }
+
+        int id = productId;
+        all.remove(id);
+
+        remove(byCategory, document.getCategoryId(), id);
+        document.getSubCategoryAncestry().forEach(subCategoryId -> remove(bySubCategory, subCategoryId, id));
+        remove(byBrand, document.getBrandId(), id);
+        remove(byGender, document.getGender(), id);
+        document.getCollectionIds().forEach(collectionId -> remove(byCollection, collectionId, id));
+        document.getTopicIds().forEach(topicId -> remove(byTopic, topicId, id));
+        document.getColorIds().forEach(colorId -> remove(byColor, colorId, id));
+        document.getSizeIds().forEach(sizeId -> remove(bySize, sizeId, id));
+
+        featured.remove(id);
+        newArrivals.remove(id);
+        onSale.remove(id);
+        inStock.remove(id);
+
+        withoutSalePrice.remove(id);
+        remove(bySalePrice, document.getSalePrice(), id);
+        remove(byCurrentPrice, document.getCurrentPrice(), id);
+    }
+
+    /**
+     * Ids of the products matching the filter, same semantics as ProductRepositoryImpl.buildProductFilter
+     */
+    RoaringBitmap match(ProductFilterRequest filter) {
+        RoaringBitmap result = all.clone();
+
+        if (filter.getCategoryId() != null) {
+            result.and(get(byCategory, filter.getCategoryId()));
+        }
+        if (filter.getSubCategoryId() != null) {
+            result.and(get(bySubCategory, filter.getSubCategoryId()));
+        }
+        if (filter.getBrandId() != null) {
+            result.and(get(byBrand, filter.getBrandId()));
+        }
+        if (filter.getCollectionId() != null) {
+            result.and(get(byCollection, filter.getCollectionId()));
+        }
+        if (filter.getTopicId() != null) {
+            result.and(get(byTopic, filter.getTopicId()));
+        }
+        if (filter.getGender() != null) {
+            result.and(get(byGender, filter.getGender()));
+        }
+
+        // Min price applies to the sale price only, products without one always pass
+        if (filter.getMinPrice() != null) {
+            RoaringBitmap priced = union(bySalePrice.tailMap(filter.getMinPrice(), true).values());
+            priced.or(withoutSalePrice);
+            result.and(priced);
+        }
+        if (filter.getMaxPrice() != null) {
+            result.and(union(byCurrentPrice.headMap(filter.getMaxPrice(), true).values()));
+        }
+
+        if (filter.getColorIds() != null && !filter.getColorIds().isEmpty()) {
+            result.and(union(byColor, filter.getColorIds()));
+        }
+        if (filter.getSizeIds() != null && !filter.getSizeIds().isEmpty()) {
+            result.and(union(bySize, filter.getSizeIds()));
+        }
+
+        if (Boolean.TRUE.equals(filter.getIsFeatured())) {
+            result.and(featured);
+        }
+        if (Boolean.TRUE.equals(filter.getIsNew())) {
+            result.and(newArrivals);
+        }
+        if (Boolean.TRUE.equals(filter.getIsOnSale())) {
+            result.and(onSale);
+        }
+        if (Boolean.TRUE.equals(filter.getInStock())) {
+            result.and(inStock);
+        }
+
+        return result;
+    }
+
+    /**
+     * Sort the matches and cut one page. Only offset + limit documents are kept in a bounded
+     * heap, so a first page over a large match set does not sort all of it.
+     */
+    List<Integer> page(RoaringBitmap matches, Sort sort, long offset, int limit) {
+        int cardinality = matches.getCardinality();
+        if (offset >= cardinality || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Comparator<ProductFacetDocument> comparator = comparator(sort);
+        int keep = (int) Math.min(cardinality, offset + limit);
+        PriorityQueue<ProductFacetDocument> heap = new PriorityQueue<>(keep, comparator.reversed());
+        matches.forEach((IntConsumer) id -> {
+            ProductFacetDocument document = documents.get(id);
+            if (heap.size() < keep) {
+                heap.add(document);
+            } else if (comparator.compare(document, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(document);
+            }
+        });
+
+        List<ProductFacetDocument> sorted = new ArrayList<>(heap);
+        sorted.sort(comparator);
+        return sorted.subList((int) offset, sorted.size()).stream()
+                .map(ProductFacetDocument::getId)
+                .toList();
+    }
+
+    /**
+     * Facet counts and price range for the matches, in a single pass over their documents
+     */
+    ProductFacetCounts count(RoaringBitmap matches) {
+        Map<Integer, Long> brands = new HashMap<>();
+        Map<Integer, Long> collections = new HashMap<>();
+        Map<Integer, Long> topics = new HashMap<>();
+        Map<Integer, Long> colors = new HashMap<>();
+        Map<Integer, Long> sizes = new HashMap<>();
+        Map<Product.Gender, Long> genders = new EnumMap<>(Product.Gender.class);
+        BigDecimal[] priceRange = new BigDecimal[2];
+
+        matches.forEach((IntConsumer) id -> {
+            ProductFacetDocument document = documents.get(id);
+            increment(brands, document.getBrandId());
+            increment(genders, document.getGender());
+            document.getCollectionIds().forEach(collectionId -> increment(collections, collectionId));
+            document.getTopicIds().forEach(topicId -> increment(topics, topicId));
+            document.getColorIds().forEach(colorId -> increment(colors, colorId));
+            document.getSizeIds().forEach(sizeId -> increment(sizes, sizeId));
+
+            BigDecimal price = document.getCurrentPrice();
+            if (price != null) {
+                if (priceRange[0] == null || price.compareTo(priceRange[0]) < 0) {
+                    priceRange[0] = price;
+                }
+                if (priceRange[1] == null || price.compareTo(priceRange[1]) > 0) {
+                    priceRange[1] = price;
+                }
+            }
+        });
+
+        return ProductFacetCounts.builder()
+                .total(matches.getCardinality())
+                .brands(brands)
+                .collections(collections)
+                .topics(topics)
+                .colors(colors)
+                .sizes(sizes)
+                .genders(genders)
+                .minPrice(priceRange[0] != null ? priceRange[0] : BigDecimal.ZERO)
+                .maxPrice(priceRange[1] != null ? priceRange[1] : BigDecimal.ZERO)
+                .build();
+    }
+
+    // Helper methods
+    private static Comparator<ProductFacetDocument> comparator(Sort sort) {
+        Comparator<ProductFacetDocument> comparator = null;
+
+        for (Sort.Order order : sort) {
+            Comparator<ProductFacetDocument> next = switch (order.getProperty()) {
+                case "price" -> Comparator.comparing(ProductFacetDocument::getCurrentPrice,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "name" -> Comparator.comparing(ProductFacetDocument::getName,
+                        Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER));
+                case "totalSold" -> Comparator.comparing(ProductFacetDocument::getTotalSold,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "viewCount" -> Comparator.comparing(ProductFacetDocument::getViewCount,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                case "averageRating" -> Comparator.comparing(ProductFacetDocument::getAverageRating,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+                default -> Comparator.comparing(ProductFacetDocument::getCreatedAt,
+                        Comparator.nullsFirst(Comparator.naturalOrder()));
+            };
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        if (comparator == null) {
+            comparator = Comparator.comparing(ProductFacetDocument::getCreatedAt,
+                    Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder())).reversed();
+        }
+
+        // Stable order between pages for equal sort values
+        return comparator.thenComparing(ProductFacetDocument::getId);
+    }
+
+    private static <K> void increment(Map<K, Long> counts, K key) {
+        if (key != null) {
+            counts.merge(key, 1L, Long::sum);
+        }
+    }
+
+    private static <K> void add(Map<K, RoaringBitmap> index, K key, int id) {
+        if (key != null) {
+            index.computeIfAbsent(key, k -> new RoaringBitmap()).add(id);
+        }
+    }
+
+    private static <K> void remove(Map<K, RoaringBitmap> index, K key, int id) {
+        if (key == null) {
+            return;
+        }
+        RoaringBitmap bitmap = index.get(key);
+        if (bitmap != null) {
+            bitmap.remove(id);
+            if (bitmap.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    private static <K> RoaringBitmap get(Map<K, RoaringBitmap> index, K key) {
+        return index.getOrDefault(key, new RoaringBitmap());
+    }
+
+    private static <K> RoaringBitmap union(Map<K, RoaringBitmap> index, Collection<K> keys) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>();
+        for (K key : keys) {
+            RoaringBitmap bitmap = index.get(key);
+            if (bitmap != null) {
+                bitmaps.add(bitmap);
+            }
+        }
+        return union(bitmaps);
+    }
+
+    private static RoaringBitmap union(Collection<RoaringBitmap> bitmaps) {
+        return bitmaps.isEmpty() ? new RoaringBitmap() : FastAggregation.or(bitmaps.iterator());
+    }
+}
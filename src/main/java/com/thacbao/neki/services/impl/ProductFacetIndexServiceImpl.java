@@ -0,0 +1,248 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.projection.ProductFacetDocument;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.events.ProductChangeBroadcaster;
+import com.thacbao.neki.events.ProductChangedEvent;
+import com.thacbao.neki.repositories.ProductRepository;
+import com.thacbao.neki.services.ProductFacetIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Owns the in-memory ProductFacetIndex. Built in chunks on startup, then kept current from
+ * ProductChangedEvent, local or broadcast by other nodes; the database only hydrates the final
+ * page of ids. A scheduled rebuild bounds how stale a node can get when a broadcast is lost.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetIndexServiceImpl implements ProductFacetIndexService {
+
+    private final ProductRepository productRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ProductChangeBroadcaster productChangeBroadcaster;
+
+    @Value("${app.catalog.facet-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.catalog.facet-index.batch-size:1000}")
+    private int batchSize;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<Integer> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+    private final AtomicLong loadSequence = new AtomicLong();
+    // Sequence of the load each product was last applied from, guarded by the write lock
+    private final Map<Integer, Long> appliedSequence = new HashMap<>();
+    // Loads started before the current index was built are older than it, guarded by the write lock
+    private long indexSequence;
+
+    private ProductFacetIndex index = new ProductFacetIndex();
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+
+    @Override
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @Override
+    public Page<Integer> filterProductIds(ProductFilterRequest filter, Pageable pageable) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap matches = index.match(filter);
+            List<Integer> ids = index.page(matches, pageable.getSort(), pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(ids, pageable, matches.getCardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ProductFacetCounts countFacets(ProductFilterRequest filter) {
+        lock.readLock().lock();
+        try {
+            return index.count(index.match(filter));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void refresh(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        // Load outside the lock, readers only wait for the in-memory update. A load that starts
+        // later reads data at least as new, so its sequence decides which refresh wins a product.
+        long sequence = loadSequence.incrementAndGet();
+        Map<Integer, ProductFacetDocument> documents = readTransaction()
+                .execute(status -> productRepository.findFacetDocuments(List.copyOf(productIds))).stream()
+                .collect(Collectors.toMap(ProductFacetDocument::getId, Function.identity()));
+
+        lock.writeLock().lock();
+        try {
+            for (Integer productId : productIds) {
+                Long applied = appliedSequence.get(productId);
+                if (sequence < indexSequence || (applied != null && applied > sequence)) {
+                    // A newer load already applied this product
+                    continue;
+                }
+                appliedSequence.put(productId, sequence);
+                index.remove(productId);
+                ProductFacetDocument document = documents.get(productId);
+                if (document != null) {
+                    index.put(document);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void addViewCounts(Map<Integer, Long> deltas) {
+        if (!isReady()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            deltas.forEach(index::addViewCount);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void rebuildAll() {
+        log.info("Building product facet index");
+        rebuilding = true;
+        changedDuringRebuild.clear();
+        // Every chunk is loaded after this, so refreshes that started earlier are older than the new index
+        long sequence = loadSequence.incrementAndGet();
+
+        ProductFacetIndex rebuilt = new ProductFacetIndex();
+        Integer lastId = 0;
+        while (true) {
+            Integer afterId = lastId;
+            Chunk chunk = readTransaction().execute(status -> {
+                List<Integer> ids = productRepository.findIdsAfter(afterId, PageRequest.of(0, batchSize));
+                return new Chunk(ids, productRepository.findFacetDocuments(ids));
+            });
+            if (chunk.ids().isEmpty()) {
+                break;
+            }
+            chunk.documents().forEach(rebuilt::put);
+            lastId = chunk.ids().get(chunk.ids().size() - 1);
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = rebuilt;
+            indexSequence = sequence;
+            appliedSequence.clear();
+            rebuilding = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        ready = true;
+
+        // Changes committed while chunks were loading may be missing from the new index
+        Set<Integer> pending = Set.copyOf(changedDuringRebuild);
+        changedDuringRebuild.clear();
+        refresh(pending);
+
+        log.info("Product facet index built with {} products", rebuilt.size());
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (rebuilding) {
+            changedDuringRebuild.addAll(event.productIds());
+        }
+        try {
+            refresh(event.productIds());
+        } catch (Exception e) {
+            log.error("Failed to refresh facet index for products {}: {}", event.productIds(), e.getMessage());
+        }
+
+        if (!event.remote()) {
+            try {
+                productChangeBroadcaster.broadcast(event);
+            } catch (Exception e) {
+                // Other nodes catch up at their next scheduled rebuild
+                log.error("Failed to broadcast product changes {}: {}", event.productIds(), e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(cron = "${app.catalog.facet-index.rebuild-cron:0 */10 * * * *}")
+    public void scheduledRebuild() {
+        // Startup owns the first build
+        if (!enabled || !ready) {
+            return;
+        }
+        try {
+            rebuildAll();
+        } catch (Exception e) {
+            // The current index keeps serving
+            rebuilding = false;
+            log.error("Failed to rebuild product facet index: {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            rebuildAll();
+        } catch (Exception e) {
+            // Listings keep running on the database until the next successful build
+            rebuilding = false;
+            log.error("Failed to build product facet index: {}", e.getMessage());
+        }
+    }
+
+    // Runs from afterCommit too, where the finished transaction is still bound to the thread
+    private TransactionTemplate readTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        return template;
+    }
+
+    private record Chunk(List<Integer> ids, List<ProductFacetDocument> documents) {
+    }
+}
@@ -0,0 +1,193 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.configurations.CacheConfig;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.ProductListResponse;
+import com.thacbao.neki.events.CatalogReferenceChangedEvent;
+import com.thacbao.neki.events.ProductChangedEvent;
+import com.thacbao.neki.model.ProductListing;
+import com.thacbao.neki.repositories.ProductListingRepository;
+import com.thacbao.neki.repositories.ProductRepository;
+import com.thacbao.neki.services.ProductListingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the product_listing read model in sync with the catalog. Rows are rebuilt from the
+ * normalized tables after each committed product or catalog reference change, so listing
+ * pages become a single indexed scan over one table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductListingServiceImpl implements ProductListingService {
+
+    private final ProductListingRepository productListingRepository;
+    private final ProductRepository productRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.catalog.read-model.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.catalog.read-model.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    @Value("${app.catalog.read-model.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<ProductListResponse> filterProducts(ProductFilterRequest filter, Pageable pageable) {
+        return productListingRepository.filterListings(filter, pageable).map(ProductListResponse::from);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ProductListResponse> filterProductsSlice(ProductFilterRequest filter, Pageable pageable) {
+        return productListingRepository.filterListingsSlice(filter, pageable).map(ProductListResponse::from);
+    }
+
+    @Override
+    @Transactional
+    public void addViewCounts(Map<Integer, Long> deltas) {
+        if (enabled) {
+            productListingRepository.addViewCounts(deltas);
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductListResponse> findListingsByIds(List<Integer> productIds) {
+        Map<Integer, ProductListing> rows = productListingRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(ProductListing::getId, Function.identity()));
+        return productIds.stream()
+                .map(rows::get)
+                .filter(Objects::nonNull)
+                .map(ProductListResponse::from)
+                .toList();
+    }
+
+    @Override
+    @Transactional
+    public void refresh(Collection<Integer> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+
+        List<Integer> ids = List.copyOf(productIds);
+
+        // Load existing rows first so saveAll merges without a select per row
+        productListingRepository.findAllById(ids);
+
+        List<ProductListing> rows = productRepository.buildListingRows(ids);
+        productListingRepository.saveAll(rows);
+
+        // Products that no longer exist lose their listing row
+        Set<Integer> removed = new HashSet<>(ids);
+        rows.forEach(row -> removed.remove(row.getId()));
+        if (!removed.isEmpty()) {
+            productListingRepository.deleteAllByIdInBatch(removed);
+        }
+    }
+
+    @Override
+    public void rebuildAll() {
+        log.info("Rebuilding product listings");
+        int total = 0;
+        Integer lastId = 0;
+
+        // One transaction per chunk keeps the persistence context small
+        while (true) {
+            List<Integer> ids = productRepository.findIdsAfter(lastId, PageRequest.of(0, rebuildBatchSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            newTransaction().executeWithoutResult(status -> refresh(ids));
+            total += ids.size();
+            lastId = ids.get(ids.size() - 1);
+        }
+
+        log.info("Rebuilt {} product listings", total);
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        // The node that made the change already refreshed the shared table
+        if (!enabled || event.remote()) {
+            return;
+        }
+        try {
+            newTransaction().executeWithoutResult(status -> refresh(event.productIds()));
+        } catch (Exception e) {
+            // The source change is already committed; the next change or rebuild repairs the row
+            log.error("Failed to refresh product listings {}: {}", event.productIds(), e.getMessage());
+        }
+    }
+
+    /**
+     * Listing rows copy brand, category and sub-category names and the sub-category path, so a
+     * change to one of those rewrites every row that embeds it. The table is shared between nodes,
+     * so only the node where the change was made does this.
+     */
+    @EventListener
+    public void onCatalogReferenceChanged(CatalogReferenceChangedEvent event) {
+        if (!enabled || event.remote() || event.id() == null) {
+            return;
+        }
+        List<Integer> ids = switch (event.cacheName()) {
+            case CacheConfig.BRANDS -> productListingRepository.findIdsByBrandId(event.id());
+            case CacheConfig.CATEGORIES -> productListingRepository.findIdsByCategoryId(event.id());
+            case CacheConfig.SUB_CATEGORIES -> productListingRepository.findIdsBySubCategoryTree(
+                    event.id(), "%/" + event.id() + "/%");
+            default -> List.of();
+        };
+
+        try {
+            for (int from = 0; from < ids.size(); from += rebuildBatchSize) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + rebuildBatchSize, ids.size()));
+                newTransaction().executeWithoutResult(status -> refresh(chunk));
+            }
+            if (!ids.isEmpty()) {
+                log.info("Refreshed {} product listings after {} {} changed", ids.size(), event.cacheName(), event.id());
+            }
+        } catch (Exception e) {
+            log.error("Failed to refresh product listings after {} {} changed: {}",
+                    event.cacheName(), event.id(), e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (enabled && rebuildOnStartup) {
+            rebuildAll();
+        }
+    }
+
+    // Published from afterCommit, where the finished transaction is still bound to the thread
+    private TransactionTemplate newTransaction() {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+}
@@ -0,0 +1,281 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.dto.projection.ProductRatingAggregate;
+import com.thacbao.neki.dto.projection.ProductRatingDelta;
+import com.thacbao.neki.events.ProductChangeTracker;
+import com.thacbao.neki.repositories.ProductRepository;
+import com.thacbao.neki.repositories.ReviewRepository;
+import com.thacbao.neki.services.JobLeaseService;
+import com.thacbao.neki.services.ProductRatingAggregator;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps Product.ratingSum, reviewCount and averageRating up to date from review deltas
+ * instead of rescanning a product's reviews on every write. Deltas of committed transactions
+ * are coalesced per product and flushed in batches; a reconciliation on startup and then
+ * periodically recomputes the aggregates from the reviews table and repairs any drift,
+ * including rows that predate rating_sum.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductRatingAggregatorImpl implements ProductRatingAggregator {
+
+    private final ProductRepository productRepository;
+    private final ReviewRepository reviewRepository;
+    private final ProductChangeTracker changeTracker;
+    private final PlatformTransactionManager transactionManager;
+    private final JobLeaseService jobLeaseService;
+
+    private static final String RECONCILE_LEASE = "product-rating-reconcile";
+
+    @Value("${app.catalog.rating.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.catalog.rating.reconcile-lease:PT30M}")
+    private Duration leaseDuration;
+
+    // Must exceed the flush interval of every node, see reconcile
+    @Value("${app.catalog.rating.reconcile-grace:PT30S}")
+    private Duration grace;
+
+    @Value("${app.catalog.rating.reconcile-rounds:3}")
+    private int rounds;
+
+    private final Map<Integer, ProductRatingDelta> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Override
+    public void recordDelta(Integer productId, long ratingSumDelta, int reviewCountDelta) {
+        if (productId == null) {
+            return;
+        }
+        ProductRatingDelta delta = new ProductRatingDelta(ratingSumDelta, reviewCountDelta);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.merge(productId, delta, ProductRatingDelta::plus);
+            return;
+        }
+
+        // Rolled back reviews must not move the rating, so hold deltas until commit
+        TransactionDeltas deltas = (TransactionDeltas) TransactionSynchronizationManager.getResource(this);
+        if (deltas == null) {
+            deltas = new TransactionDeltas();
+            TransactionSynchronizationManager.bindResource(this, deltas);
+            TransactionSynchronizationManager.registerSynchronization(deltas);
+        }
+        deltas.byProduct.merge(productId, delta, ProductRatingDelta::plus);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.catalog.rating.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Integer, ProductRatingDelta> deltas = drain(pending.keySet());
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            List<Integer> ids = new ArrayList<>(deltas.keySet());
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                Map<Integer, ProductRatingDelta> chunk = new HashMap<>();
+                for (Integer id : ids.subList(from, Math.min(from + batchSize, ids.size()))) {
+                    chunk.put(id, deltas.get(id));
+                }
+                writeChunk(chunk);
+            }
+            log.debug("Flushed rating deltas for {} products", ids.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Runs on one node at a time. Deltas of other nodes cannot be seen from here, so a drifted
+     * product is only observed at first: stored values and the review aggregate, read in one
+     * transaction. After a grace period longer than the flush interval, every delta that was
+     * in flight at the observation has been written and changed the stored values, so the
+     * repair is a compare-and-set against the observed values. Products that moved in between
+     * are observed again, up to the configured number of rounds, and otherwise left for the next run.
+     */
+    @Override
+    @Scheduled(cron = "${app.catalog.rating.reconcile-cron:0 30 3 * * ?}")
+    public void reconcile() {
+        if (!jobLeaseService.tryAcquire(RECONCILE_LEASE, leaseDuration)) {
+            log.info("Rating reconciliation skipped, another node holds the lease");
+            return;
+        }
+        try {
+            log.info("Starting product rating reconciliation");
+            flush();
+
+            List<RatingRepair> drifted = new ArrayList<>();
+            Integer lastId = 0;
+            while (true) {
+                Integer afterId = lastId;
+                List<Integer> ids = new TransactionTemplate(transactionManager).execute(status ->
+                        productRepository.findIdsAfter(afterId, PageRequest.of(0, batchSize)));
+                if (ids == null || ids.isEmpty()) {
+                    break;
+                }
+                drifted.addAll(observe(ids));
+                lastId = ids.get(ids.size() - 1);
+            }
+
+            int repaired = 0;
+            for (int round = 1; !drifted.isEmpty(); round++) {
+                Thread.sleep(grace.toMillis());
+                List<Integer> moved = repair(drifted);
+                repaired += drifted.size() - moved.size();
+                if (moved.isEmpty() || round >= rounds) {
+                    if (!moved.isEmpty()) {
+                        log.info("{} products kept changing, left for the next rating reconciliation", moved.size());
+                    }
+                    break;
+                }
+                drifted = new ArrayList<>();
+                for (int from = 0; from < moved.size(); from += batchSize) {
+                    drifted.addAll(observe(moved.subList(from, Math.min(from + batchSize, moved.size()))));
+                }
+            }
+            log.info("Rating reconciliation completed, {} products repaired", repaired);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Rating reconciliation interrupted");
+        } finally {
+            jobLeaseService.release(RECONCILE_LEASE);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            // Flushing does not depend on it, drift is repaired on the next run
+            log.error("Startup rating reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing pending rating deltas before shutdown");
+        flush();
+    }
+
+    /**
+     * Compare stored aggregates with the reviews table for one chunk of products. Both reads run
+     * in one transaction so they see the same snapshot.
+     */
+    private List<RatingRepair> observe(List<Integer> ids) {
+        List<RatingRepair> drifted = new TransactionTemplate(transactionManager).execute(status -> {
+            Map<Integer, ProductRatingAggregate> actual = reviewRepository.aggregateRatings(ids).stream()
+                    .collect(Collectors.toMap(ProductRatingAggregate::getProductId, Function.identity()));
+
+            List<RatingRepair> repairs = new ArrayList<>();
+            for (ProductRatingAggregate stored : productRepository.findRatingAggregates(ids)) {
+                ProductRatingAggregate expected = actual.get(stored.getProductId());
+                long storedSum = stored.getRatingSum() != null ? stored.getRatingSum() : 0L;
+                int storedCount = stored.getReviewCount() != null ? stored.getReviewCount().intValue() : 0;
+                long ratingSum = expected != null ? expected.getRatingSum() : 0L;
+                int reviewCount = expected != null ? expected.getReviewCount().intValue() : 0;
+
+                if (storedSum != ratingSum || storedCount != reviewCount) {
+                    repairs.add(new RatingRepair(stored.getProductId(), storedSum, storedCount, ratingSum, reviewCount));
+                }
+            }
+            return repairs;
+        });
+        return drifted != null ? drifted : List.of();
+    }
+
+    /**
+     * Write the observed review aggregates where the stored values did not move since the
+     * observation. Returns the products that did move.
+     */
+    private List<Integer> repair(List<RatingRepair> repairs) {
+        List<Integer> moved = new ArrayList<>();
+        for (int from = 0; from < repairs.size(); from += batchSize) {
+            List<RatingRepair> chunk = repairs.subList(from, Math.min(from + batchSize, repairs.size()));
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (RatingRepair repair : chunk) {
+                    BigDecimal average = repair.reviewCount() > 0
+                            ? BigDecimal.valueOf(repair.ratingSum()).divide(BigDecimal.valueOf(repair.reviewCount()), 2, RoundingMode.HALF_UP)
+                            : BigDecimal.ZERO;
+                    int updated = productRepository.repairRating(repair.productId(), repair.storedSum(), repair.storedCount(),
+                            repair.ratingSum(), repair.reviewCount(), average);
+                    if (updated > 0) {
+                        changeTracker.markChanged(repair.productId());
+                    } else {
+                        moved.add(repair.productId());
+                    }
+                }
+            });
+        }
+        return moved;
+    }
+
+    private Map<Integer, ProductRatingDelta> drain(Collection<Integer> productIds) {
+        Map<Integer, ProductRatingDelta> deltas = new HashMap<>();
+        for (Integer productId : new ArrayList<>(productIds)) {
+            ProductRatingDelta delta = pending.remove(productId);
+            if (delta != null && !delta.isZero()) {
+                deltas.put(productId, delta);
+            }
+        }
+        return deltas;
+    }
+
+    private void writeChunk(Map<Integer, ProductRatingDelta> chunk) {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                productRepository.addRatingDeltas(chunk);
+                chunk.keySet().forEach(changeTracker::markChanged);
+            });
+        } catch (Exception e) {
+            // Put the deltas back, they are retried on the next flush
+            chunk.forEach((productId, delta) -> pending.merge(productId, delta, ProductRatingDelta::plus));
+            log.error("Failed to flush rating deltas for {} products: {}", chunk.size(), e.getMessage());
+        }
+    }
+
+    private record RatingRepair(Integer productId, long storedSum, int storedCount, long ratingSum, int reviewCount) {
+    }
+
+    private class TransactionDeltas implements TransactionSynchronization {
+
+        private final Map<Integer, ProductRatingDelta> byProduct = new HashMap<>();
+
+        @Override
+        public void afterCommit() {
+            byProduct.forEach((productId, delta) -> pending.merge(productId, delta, ProductRatingDelta::plus));
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(ProductRatingAggregatorImpl.this);
+        }
+    }
+}
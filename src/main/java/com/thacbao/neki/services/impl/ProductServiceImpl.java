@@ -0,0 +1,180 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.dto.projection.ProductFacetCounts;
+import com.thacbao.neki.dto.request.product.ProductFilterRequest;
+import com.thacbao.neki.dto.response.*;
+import com.thacbao.neki.repositories.*;
+import com.thacbao.neki.services.CatalogReferenceService;
+import com.thacbao.neki.services.ProductFacetIndexService;
+import com.thacbao.neki.services.ProductListingService;
+import com.thacbao.neki.services.ProductService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Product listings are built in two phases: first the page of matching ids, then a fixed
+ * number of batched queries hydrate that page. The query count per page does not depend
+ * on the page size. With app.catalog.read-model.enabled, offset listings are served from the
+ * denormalized product_listing table instead. Once the in-memory facet index is built it answers
+ * phase one without touching the database.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class ProductServiceImpl implements ProductService {
+
+    private final ProductRepository productRepository;
+    private final CatalogReferenceService catalogReferenceService;
+    private final ProductListingService productListingService;
+    private final ProductFacetIndexService productFacetIndexService;
+
+    @Value("${app.catalog.read-model.enabled:false}")
+    private boolean readModelEnabled;
+
+    @Override
+    public Page<ProductListResponse> filterProducts(ProductFilterRequest filter, Pageable pageable) {
+        if (productFacetIndexService.isReady()) {
+            return toListingPage(productFacetIndexService.filterProductIds(filter, pageable));
+        }
+        if (readModelEnabled) {
+            return productListingService.filterProducts(filter, pageable);
+        }
+        Page<Integer> ids = productRepository.filterProductIds(filter, pageable);
+        return toListingPage(ids);
+    }
+
+    @Override
+    public Slice<ProductListResponse> filterProductsSlice(ProductFilterRequest filter, Pageable pageable) {
+        if (productFacetIndexService.isReady()) {
+            // The in-memory index knows the total anyway
+            Page<Integer> ids = productFacetIndexService.filterProductIds(filter, pageable);
+            return new SliceImpl<>(hydrate(ids.getContent()), pageable, ids.hasNext());
+        }
+        if (readModelEnabled) {
+            return productListingService.filterProductsSlice(filter, pageable);
+        }
+        Slice<Integer> ids = productRepository.filterProductIdsSlice(filter, pageable);
+        return new SliceImpl<>(hydrate(ids.getContent()), pageable, ids.hasNext());
+    }
+
+    @Override
+    public CursorPageResponse<ProductListResponse> filterProductsByCursor(ProductFilterRequest filter, Sort sort,
+                                                                          String cursor, int size) {
+        CursorPageResponse<Integer> page = productRepository.filterProductIdsByCursor(filter, sort, cursor, size);
+        List<ProductListResponse> content = productRepository.findListingsByIds(page.getContent());
+
+        return CursorPageResponse.<ProductListResponse>builder()
+                .content(content)
+                .size(page.getSize())
+                .hasNext(page.getHasNext())
+                .nextCursor(page.getNextCursor())
+                .build();
+    }
+
+    @Override
+    public Page<ProductListResponse> getProductsByCollection(Integer collectionId, Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().collectionId(collectionId).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getProductsByTopic(Integer topicId, Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().topicId(topicId).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getProductsByBrand(Integer brandId, Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().brandId(brandId).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getFeaturedProducts(Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().isFeatured(true).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getNewProducts(Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().isNew(true).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getOnSaleProducts(Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().isOnSale(true).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getProductsInStock(Pageable pageable) {
+        return filterProducts(ProductFilterRequest.builder().inStock(true).build(), pageable);
+    }
+
+    @Override
+    public Page<ProductListResponse> getBestSellers(Pageable pageable) {
+        return filterProducts(new ProductFilterRequest(),
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "totalSold")));
+    }
+
+    @Override
+    public Page<ProductListResponse> getPopularProducts(Pageable pageable) {
+        return filterProducts(new ProductFilterRequest(),
+                PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), Sort.by(Sort.Direction.DESC, "viewCount")));
+    }
+
+    @Override
+    public FilterOptionsResponse getFilterOptions(ProductFilterRequest filter) {
+        ProductFacetCounts counts = productFacetIndexService.isReady()
+                ? productFacetIndexService.countFacets(filter)
+                : productRepository.countFacets(filter);
+
+        // Names come from the reference caches; counts are set on copies of the cached entries
+        return FilterOptionsResponse.builder()
+                .brands(catalogReferenceService.getBrands(counts.getBrands().keySet()).values().stream()
+                        .map(brand -> brand.withProductCount(counts.getBrands().get(brand.getId())))
+                        .sorted(Comparator.comparing(BrandResponse::getProductCount).reversed())
+                        .toList())
+                .collections(catalogReferenceService.getCollections(counts.getCollections().keySet()).values().stream()
+                        .map(collection -> collection.withProductCount(counts.getCollections().get(collection.getId())))
+                        .sorted(Comparator.comparing(CollectionResponse::getProductCount).reversed())
+                        .toList())
+                .topics(catalogReferenceService.getTopics(counts.getTopics().keySet()).values().stream()
+                        .map(topic -> topic.withProductCount(counts.getTopics().get(topic.getId())))
+                        .sorted(Comparator.comparing(TopicResponse::getProductCount).reversed())
+                        .toList())
+                .colors(catalogReferenceService.getColors(counts.getColors().keySet()).values().stream()
+                        .map(color -> color.withProductCount(counts.getColors().get(color.getId())))
+                        .sorted(Comparator.comparing(ColorResponse::getProductCount).reversed())
+                        .toList())
+                .sizes(catalogReferenceService.getSizes(counts.getSizes().keySet()).values().stream()
+                        .map(size -> size.withProductCount(counts.getSizes().get(size.getId())))
+                        .sorted(Comparator.comparing(SizeResponse::getDisplayOrder,
+                                Comparator.nullsLast(Comparator.naturalOrder())))
+                        .toList())
+                .genders(counts.getGenders())
+                .totalProducts(counts.getTotal())
+                .minPrice(counts.getMinPrice())
+                .maxPrice(counts.getMaxPrice())
+                .build();
+    }
+
+    private Page<ProductListResponse> toListingPage(Page<Integer> ids) {
+        return new PageImpl<>(hydrate(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    private List<ProductListResponse> hydrate(List<Integer> ids) {
+        return readModelEnabled
+                ? productListingService.findListingsByIds(ids)
+                : productRepository.findListingsByIds(ids);
+    }
+}
@@ -0,0 +1,115 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.repositories.ProductRepository;
+import com.thacbao.neki.services.ProductFacetIndexService;
+import com.thacbao.neki.services.ProductListingService;
+import com.thacbao.neki.services.ProductViewCounter;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Coalesces product page views in memory instead of updating the products row on every view.
+ * Each product has a LongAdder, so concurrent views of a hot product do not contend. A scheduled
+ * flush writes the accumulated deltas with one batched UPDATE per chunk of products.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductViewCounterImpl implements ProductViewCounter {
+
+    private final ProductRepository productRepository;
+    private final ProductListingService productListingService;
+    private final ProductFacetIndexService productFacetIndexService;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${app.catalog.view-count.batch-size:500}")
+    private int batchSize;
+
+    // Entries are kept after a flush, the map is bounded by the number of viewed products
+    private final Map<Integer, LongAdder> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Override
+    public void recordView(Integer productId) {
+        if (productId == null) {
+            return;
+        }
+        pending.computeIfAbsent(productId, id -> new LongAdder()).increment();
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.catalog.view-count.flush-interval-ms:5000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<Integer, Long> deltas = drain();
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            List<Integer> ids = new ArrayList<>(deltas.keySet());
+            for (int from = 0; from < ids.size(); from += batchSize) {
+                Map<Integer, Long> chunk = new HashMap<>();
+                for (Integer id : ids.subList(from, Math.min(from + batchSize, ids.size()))) {
+                    chunk.put(id, deltas.get(id));
+                }
+                writeChunk(chunk);
+            }
+            log.debug("Flushed view counts for {} products", ids.size());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        log.info("Flushing buffered product views before shutdown");
+        flush();
+    }
+
+    /**
+     * Take the current count of every product and reset it. sumThenReset swaps each cell to
+     * zero, so a view recorded meanwhile is either in this drain or in the next one.
+     */
+    private Map<Integer, Long> drain() {
+        Map<Integer, Long> deltas = new HashMap<>();
+        pending.forEach((productId, adder) -> {
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(productId, delta);
+            }
+        });
+        return deltas;
+    }
+
+    private void writeChunk(Map<Integer, Long> chunk) {
+        try {
+            // Only the view count column is touched, listing rows and index documents are not rebuilt
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                productRepository.addViewCounts(chunk);
+                productListingService.addViewCounts(chunk);
+            });
+        } catch (Exception e) {
+            // Put the deltas back, they are retried on the next flush
+            chunk.forEach((productId, delta) ->
+                    pending.computeIfAbsent(productId, id -> new LongAdder()).add(delta));
+            log.error("Failed to flush view counts for {} products: {}", chunk.size(), e.getMessage());
+            return;
+        }
+        productFacetIndexService.addViewCounts(chunk);
+    }
+}
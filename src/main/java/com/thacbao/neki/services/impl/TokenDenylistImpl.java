@@ -0,0 +1,114 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.configurations.JwtUtils;
+import com.thacbao.neki.model.TokenRevocation;
+import com.thacbao.neki.repositories.TokenRevocationRepository;
+import com.thacbao.neki.security.VerifiedClaims;
+import com.thacbao.neki.services.ExpiredRowPurger;
+import com.thacbao.neki.services.TokenDenylist;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Denylist for stateless authentication. Only users revoked within the access token lifetime
+ * are held in memory, so lookups never touch the database; other nodes' revocations arrive
+ * through a poll on the token_revocations id, which costs one indexed query per interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class TokenDenylistImpl implements TokenDenylist {
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final JwtUtils jwtUtils;
+    private final ExpiredRowPurger expiredRowPurger;
+
+    // Latest revocation time per user
+    private final Map<Integer, Instant> revokedAt = new ConcurrentHashMap<>();
+    // Highest token_revocations id applied locally
+    private volatile int version;
+
+    @Override
+    public void revokeUser(Integer userId) {
+        LocalDateTime now = LocalDateTime.now();
+        tokenRevocationRepository.save(TokenRevocation.builder()
+                .userId(userId)
+                .revokedAt(now)
+                .build());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, now);
+                }
+            });
+        } else {
+            apply(userId, now);
+        }
+    }
+
+    @Override
+    public boolean isRevoked(VerifiedClaims claims) {
+        Instant revoked = revokedAt.get(claims.userId());
+        // Revocation times are kept at the second precision of iat, so a token issued in the same
+        // second right after a revocation, e.g. at login after a password reset, is still accepted
+        return revoked != null && (claims.issuedAt() == null || claims.issuedAt().isBefore(revoked));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        List<TokenRevocation> revocations = tokenRevocationRepository
+                .findByRevokedAtAfterOrderByIdAsc(LocalDateTime.now().minus(jwtUtils.getAccessTokenTtl()));
+        applyAll(revocations);
+        log.info("Token denylist loaded with {} users", revokedAt.size());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Scheduled(fixedDelayString = "${app.security.denylist.refresh-interval-ms:5000}")
+    public void refresh() {
+        applyAll(tokenRevocationRepository.findByIdGreaterThanOrderByIdAsc(version));
+
+        // Tokens issued before this are expired anyway
+        Instant horizon = Instant.now().minus(jwtUtils.getAccessTokenTtl());
+        revokedAt.values().removeIf(revoked -> revoked.isBefore(horizon));
+    }
+
+    @Scheduled(cron = "${app.security.denylist.purge-cron:0 15 2 * * ?}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void purge() {
+        expiredRowPurger.submit(ExpiredRowPurger.Spec.delete("token-revocation-purge", "token_revocations",
+                "revoked_at < ?", LocalDateTime.now().minus(jwtUtils.getAccessTokenTtl())));
+    }
+
+    // Helper methods
+    private void applyAll(List<TokenRevocation> revocations) {
+        for (TokenRevocation revocation : revocations) {
+            apply(revocation.getUserId(), revocation.getRevokedAt());
+            version = Math.max(version, revocation.getId());
+        }
+    }
+
+    private void apply(Integer userId, LocalDateTime revokedAtTime) {
+        Instant revoked = revokedAtTime.atZone(ZoneId.systemDefault()).toInstant().truncatedTo(ChronoUnit.SECONDS);
+        revokedAt.merge(userId, revoked, (current, incoming) -> incoming.isAfter(current) ? incoming : current);
+    }
+}
@@ -7,15 +7,21 @@ import com.thacbao.neki.model.RefreshToken;
 import com.thacbao.neki.model.User;
 import com.thacbao.neki.repositories.RefreshTokenRepository;
 import com.thacbao.neki.repositories.UserRepository;
+import com.thacbao.neki.services.ExpiredRowPurger;
 import com.thacbao.neki.services.TokenService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.UUID;
 
@@ -27,6 +33,7 @@ public class TokenServiceImpl implements TokenService {
 
     private final RefreshTokenRepository refreshTokenRepository;
     private final UserRepository userRepository;
+    private final ExpiredRowPurger expiredRowPurger;
 
     @Value("${jwt.refreshToken.expirationDays:7}")
     private int refreshTokenExpirationDays;
@@ -39,26 +46,18 @@ public class TokenServiceImpl implements TokenService {
      * */
     @Override
     public RefreshToken createRefreshToken(User user, String deviceInfo, String ipAddress) {
-        // Check max devices limit
-        long validTokenCount = refreshTokenRepository.countValidTokensByUser(user, LocalDateTime.now());
-        if (validTokenCount >= maxDevicesPerUser) {
-            // Revoke oldest token
-            List<RefreshToken> userTokens = refreshTokenRepository.findByUser(user);
-            userTokens.stream()
-                    .filter(RefreshToken::isValid)
-                    .min((t1, t2) -> t1.getCreatedAt().compareTo(t2.getCreatedAt()))
-                    .ifPresent(oldestToken -> {
-                        oldestToken.setIsRevoked(true);
-                        oldestToken.setRevokedAt(LocalDateTime.now());
-                        refreshTokenRepository.save(oldestToken);
-                        log.info("Revoked oldest token for user {} due to device limit", user.getEmail());
-                    });
+        // Device limit: keep the newest (max - 1) live tokens, in one ranked update
+        int revoked = refreshTokenRepository.revokeOldestBeyond(user.getId(), maxDevicesPerUser - 1, LocalDateTime.now());
+        if (revoked > 0) {
+            log.info("Revoked {} oldest tokens for user {} due to device limit", revoked, user.getEmail());
         }
 
         // Create new refresh token
+        String token = generateRefreshToken();
         RefreshToken refreshToken = RefreshToken.builder()
                 .user(user)
-                .token(generateRefreshToken())
+                .tokenHash(hash(token))
+                .token(token)
                 .expiresAt(LocalDateTime.now().plusDays(refreshTokenExpirationDays))
                 .isRevoked(false)
                 .deviceInfo(deviceInfo)
@@ -77,7 +76,7 @@ public class TokenServiceImpl implements TokenService {
     @Override
     @Transactional(readOnly = true)
     public RefreshToken verifyRefreshToken(String token) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(token))
                 .orElseThrow(() -> new InvalidException("Refresh token không hợp lệ"));
 
         if (!refreshToken.isValid()) {
@@ -96,7 +95,7 @@ public class TokenServiceImpl implements TokenService {
      * */
     @Override
     public void revokeRefreshToken(String token) {
-        RefreshToken refreshToken = refreshTokenRepository.findByToken(token)
+        RefreshToken refreshToken = refreshTokenRepository.findByTokenHash(hash(token))
                 .orElseThrow(() -> new NotFoundException("Refresh token không tồn tại"));
 
         refreshToken.setIsRevoked(true);
@@ -111,17 +110,13 @@ public class TokenServiceImpl implements TokenService {
      * */
     @Override
     public void revokeAllUserTokens(Integer userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new NotFoundException("Người dùng không tồn tại"));
-
-        List<RefreshToken> userTokens = refreshTokenRepository.findByUser(user);
-        userTokens.forEach(token -> {
-            token.setIsRevoked(true);
-            token.setRevokedAt(LocalDateTime.now());
-        });
+        // Epoch bump also invalidates access tokens already handed out
+        if (userRepository.incrementTokenEpoch(userId) == 0) {
+            throw new NotFoundException("Người dùng không tồn tại");
+        }
 
-        refreshTokenRepository.saveAll(userTokens);
-        log.info("Revoked all tokens for user: {}", user.getEmail());
+        int revoked = refreshTokenRepository.revokeAllActiveByUserId(userId, LocalDateTime.now());
+        log.info("Revoked {} tokens for user: {}", revoked, userId);
     }
 
     /**
@@ -133,10 +128,10 @@ public class TokenServiceImpl implements TokenService {
         RefreshToken oldRefreshToken = verifyRefreshToken(oldToken);
         User user = oldRefreshToken.getUser();
 
-        // Revoke old token
-        oldRefreshToken.setIsRevoked(true);
-        oldRefreshToken.setRevokedAt(LocalDateTime.now());
-        refreshTokenRepository.save(oldRefreshToken);
+        // Revoke old token; a concurrent rotation of the same token loses here
+        if (refreshTokenRepository.revokeIfActive(oldRefreshToken.getId(), LocalDateTime.now()) == 0) {
+            throw new InvalidException("Refresh token đã bị thu hồi");
+        }
 
         // Create new token
         RefreshToken newRefreshToken = createRefreshToken(user, deviceInfo, ipAddress);
@@ -147,13 +142,23 @@ public class TokenServiceImpl implements TokenService {
 
     @Override
     @Scheduled(cron = "0 0 2 * * ?") // kiem tra dinh ky
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void cleanupExpiredTokens() {
         log.info("Starting cleanup of expired and revoked tokens");
-        refreshTokenRepository.deleteExpiredAndRevokedTokens(LocalDateTime.now());
-        log.info("Cleanup completed");
+        expiredRowPurger.submit(ExpiredRowPurger.Spec.delete("refresh-token-purge", "refresh_tokens",
+                "expires_at < ? OR is_revoked = true", LocalDateTime.now()));
     }
 
     private String generateRefreshToken() {
         return UUID.randomUUID().toString() + "-" + UUID.randomUUID().toString();
     }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.thacbao.neki.services.impl;
 
+import com.thacbao.neki.configurations.CustomUserDetailsService;
 import com.thacbao.neki.configurations.JwtUtils;
 import com.thacbao.neki.dto.request.auth.ChangePasswordRequest;
 import com.thacbao.neki.dto.request.auth.UserLoginRequest;
@@ -18,7 +19,10 @@ import com.thacbao.neki.model.User;
 import com.thacbao.neki.repositories.RoleRepository;
 import com.thacbao.neki.repositories.UserRepository;
 import com.thacbao.neki.security.SecurityUtils;
+import com.thacbao.neki.security.VerifiedClaims;
 import com.thacbao.neki.services.EmailService;
+import com.thacbao.neki.services.ExpiredRowPurger;
+import com.thacbao.neki.services.TokenDenylist;
 import com.thacbao.neki.services.TokenService;
 import com.thacbao.neki.services.UserService;
 import lombok.RequiredArgsConstructor;
@@ -31,7 +35,9 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.security.SecureRandom;
@@ -52,6 +58,9 @@ public class UserServiceImpl implements UserService {
     private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
     private final TokenService tokenService;
+    private final TokenDenylist tokenDenylist;
+    private final CustomUserDetailsService userDetailsService;
+    private final ExpiredRowPurger expiredRowPurger;
 
     @Value("${jwt.accessToken.expirationHours:24}")
     private int accessTokenExpirationHours;
@@ -131,6 +140,9 @@ public class UserServiceImpl implements UserService {
             claims.put("roles", user.getRoles().stream()
                     .map(Role::getName)
                     .toList());
+            claims.put("emailVerified", user.getEmailVerified());
+            claims.put("tokenEpoch", user.getTokenEpoch());
+            claims.put("type", VerifiedClaims.ACCESS_TOKEN);
 
             String accessToken = jwtUtils.generateToken(user.getEmail(), claims);
 
@@ -192,6 +204,7 @@ public class UserServiceImpl implements UserService {
         }
 
         userRepository.save(user);
+        userDetailsService.evictPrincipal(user.getEmail());
         log.info("Profile updated for user: {}", user.getEmail());
     }
 
@@ -213,7 +226,8 @@ public class UserServiceImpl implements UserService {
             throw new InvalidException("Mật khẩu xác nhận không khớp");
         }
 
-        if (passwordEncoder.matches(request.getNewPassword(), user.getPasswordHash())) {
+        // The old password already matched, so comparing the raw values saves a second hash
+        if (request.getNewPassword().equals(request.getOldPassword())) {
             throw new InvalidException("Mật khẩu mới không được trùng với mật khẩu cũ");
         }
 
@@ -221,6 +235,8 @@ public class UserServiceImpl implements UserService {
         userRepository.save(user);
 
         tokenService.revokeAllUserTokens(userId);
+        tokenDenylist.revokeUser(userId);
+        userDetailsService.evictPrincipal(user.getEmail());
 
         emailService.sendPasswordChangedEmail(user.getEmail(), user.getFullName());
 
@@ -292,8 +308,10 @@ public class UserServiceImpl implements UserService {
 
         user.setIsActive(!block);
         userRepository.save(user);
+        userDetailsService.evictPrincipal(user.getEmail());
         if (block) {
             tokenService.revokeAllUserTokens(userId);
+            tokenDenylist.revokeUser(userId);
             emailService.sendAccountBlockedEmail(user.getEmail(), user.getFullName());
         }
 
@@ -314,6 +332,8 @@ public class UserServiceImpl implements UserService {
         }
 
         userRepository.delete(user);
+        tokenDenylist.revokeUser(userId);
+        userDetailsService.evictPrincipal(user.getEmail());
         log.info("User deleted: {}", user.getEmail());
     }
 
@@ -335,6 +355,7 @@ public class UserServiceImpl implements UserService {
         user.setEmailVerified(true);
         user.setOtp(null);
         userRepository.save(user);
+        userDetailsService.evictPrincipal(user.getEmail());
 
         emailService.sendWelcomeEmail(user.getEmail(), user.getFullName());
 
@@ -403,9 +424,9 @@ public class UserServiceImpl implements UserService {
             if (!newPassword.equals(confirmPassword)) {
                 throw new InvalidException("Mật khẩu không trùng khớp");
             }
-            String email = jwtUtils.getUsernameFromToken(token);
-            var claims = jwtUtils.getClaimsFromToken(token);
-            if (!"password_reset".equals(claims.get("type"))) {
+            var claims = jwtUtils.verify(token);
+            String email = claims.subject();
+            if (!"password_reset".equals(claims.type())) {
                 throw new InvalidException("Token không hợp lệ");
             }
 
@@ -416,6 +437,8 @@ public class UserServiceImpl implements UserService {
             userRepository.save(user);
 
             tokenService.revokeAllUserTokens(user.getId());
+            tokenDenylist.revokeUser(user.getId());
+            userDetailsService.evictPrincipal(email);
 
             log.info("Password reset successfully for user: {}", email);
 
@@ -435,6 +458,9 @@ public class UserServiceImpl implements UserService {
         claims.put("roles", user.getRoles().stream()
                 .map(Role::getName)
                 .toList());
+        claims.put("emailVerified", user.getEmailVerified());
+        claims.put("tokenEpoch", user.getTokenEpoch());
+        claims.put("type", VerifiedClaims.ACCESS_TOKEN);
 
         String accessToken = jwtUtils.generateToken(user.getEmail(), claims);
 
@@ -461,6 +487,17 @@ public class UserServiceImpl implements UserService {
         return userRepository.countActiveVerifiedUsers();
     }
 
+    /**
+     * OTPs are rejected after 10 minutes anyway; clear the stale ones in chunks
+     */
+    @Override
+    @Scheduled(cron = "${app.purge.otp-cron:0 30 2 * * ?}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void clearExpiredOtps() {
+        expiredRowPurger.submit(ExpiredRowPurger.Spec.clear("otp-purge", "users", List.of("otp", "otp_generate_time"),
+                "otp IS NOT NULL AND otp_generate_time < ?", LocalDateTime.now().minusMinutes(10)));
+    }
+
 
     private String generateOTP() {
         StringBuilder otp = new StringBuilder();
@@ -0,0 +1,56 @@
+package com.thacbao.neki.repositories;
+
+import com.thacbao.neki.exceptions.common.InvalidException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProductCursorTest {
+
+    @Test
+    void roundTripsSortValuesAndId() {
+        ProductCursor cursor = new ProductCursor("price:ASC,name:DESC", List.of("199000.00", "Áo thun"), 42);
+
+        ProductCursor decoded = ProductCursor.decode(cursor.encode());
+
+        assertThat(decoded).isEqualTo(cursor);
+    }
+
+    @Test
+    void keepsNullSortValueAsNull() {
+        ProductCursor cursor = new ProductCursor("averageRating:DESC", Arrays.asList((String) null), 7);
+
+        ProductCursor decoded = ProductCursor.decode(cursor.encode());
+
+        assertThat(decoded.values()).containsExactly((String) null);
+        assertThat(decoded.id()).isEqualTo(7);
+    }
+
+    @Test
+    void encodesUrlSafeWithoutPadding() {
+        String encoded = new ProductCursor("createdAt:DESC", List.of("2024-01-01T10:15:30"), 1).encode();
+
+        assertThat(encoded).doesNotContain("+", "/", "=");
+    }
+
+    @Test
+    void rejectsGarbage() {
+        assertThatThrownBy(() -> ProductCursor.decode("not a cursor!"))
+                .isInstanceOf(InvalidException.class);
+    }
+
+    @Test
+    void rejectsCursorWithMissingFields() {
+        String json = "{\"sort\":\"price:ASC\",\"values\":[\"1\"]}";
+        String encoded = Base64.getUrlEncoder().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> ProductCursor.decode(encoded))
+                .isInstanceOf(InvalidException.class);
+    }
+}
@@ -0,0 +1,46 @@
+package com.thacbao.neki.security;
+
+import com.thacbao.neki.security.RouteClassifier.RouteType;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RouteClassifierTest {
+
+    private final RouteClassifier classifier = new RouteClassifier();
+
+    @Test
+    void matchesPublicPathsExactly() {
+        assertThat(classifier.classify("/api/v1/auth/login")).isEqualTo(RouteType.PUBLIC);
+        assertThat(classifier.classify("/api/v1/categories/hierarchy")).isEqualTo(RouteType.PUBLIC);
+
+        assertThat(classifier.classify("/api/v1/auth/login/extra")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/api/v1/auth/logi")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/api/v1/auth/loginx")).isEqualTo(RouteType.AUTHENTICATED);
+    }
+
+    @Test
+    void matchesPublicPrefixesAtSegmentBoundaries() {
+        assertThat(classifier.classify("/api/v1/auth/set-password")).isEqualTo(RouteType.PUBLIC);
+        assertThat(classifier.classify("/api/v1/auth/set-password/abc")).isEqualTo(RouteType.PUBLIC);
+        assertThat(classifier.classify("/oauth2/callback/google/more")).isEqualTo(RouteType.PUBLIC);
+
+        assertThat(classifier.classify("/api/v1/auth/set-passwordx")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/oauth2/callbacks")).isEqualTo(RouteType.AUTHENTICATED);
+    }
+
+    @Test
+    void classifiesRefreshTokenRoute() {
+        assertThat(classifier.classify("/api/v1/auth/refresh-token")).isEqualTo(RouteType.REFRESH_TOKEN);
+        assertThat(classifier.classify("/api/v1/auth/refresh-token/x")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.isPublic("/api/v1/auth/refresh-token")).isFalse();
+    }
+
+    @Test
+    void treatsEverythingElseAsAuthenticated() {
+        assertThat(classifier.classify("")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/api/v1/users/me")).isEqualTo(RouteType.AUTHENTICATED);
+        assertThat(classifier.classify("/api/v1/auth/lögin")).isEqualTo(RouteType.AUTHENTICATED);
+    }
+}
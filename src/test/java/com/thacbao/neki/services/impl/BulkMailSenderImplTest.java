@@ -0,0 +1,218 @@
+package com.thacbao.neki.services.impl;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BulkMailSenderImplTest {
+
+    private FakeSmtpServer server;
+    private JavaMailSenderImpl mailSender;
+    private BulkMailSenderImpl bulkMailSender;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new FakeSmtpServer();
+        mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("127.0.0.1");
+        mailSender.setPort(server.port());
+        Properties properties = new Properties();
+        properties.put("mail.smtp.timeout", "5000");
+        properties.put("mail.smtp.connectiontimeout", "5000");
+        mailSender.setJavaMailProperties(properties);
+
+        bulkMailSender = new BulkMailSenderImpl(mailSender);
+        ReflectionTestUtils.setField(bulkMailSender, "messagesPerConnection", 2);
+        ReflectionTestUtils.setField(bulkMailSender, "ratePerSecond", 0.0);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void opensNewConnectionAfterPerConnectionCap() throws Exception {
+        List<MimeMessage> messages = List.of(message("a@neki.vn", "1"), message("b@neki.vn", "2"),
+                message("c@neki.vn", "3"), message("d@neki.vn", "4"), message("e@neki.vn", "5"));
+
+        Map<MimeMessage, Exception> failed = bulkMailSender.send(messages);
+
+        assertThat(failed).isEmpty();
+        assertThat(server.deliveredPerConnection()).containsExactly(List.of("1", "2"), List.of("3", "4"), List.of("5"));
+    }
+
+    @Test
+    void reportsRejectedRecipientAndKeepsConnection() throws Exception {
+        server.rejectRecipient("bad@neki.vn");
+        MimeMessage rejected = message("bad@neki.vn", "2");
+        List<MimeMessage> messages = List.of(message("a@neki.vn", "1"), rejected, message("c@neki.vn", "3"));
+
+        Map<MimeMessage, Exception> failed = bulkMailSender.send(messages);
+
+        assertThat(failed).containsOnlyKeys(rejected);
+        assertThat(failed.get(rejected)).isInstanceOf(SendFailedException.class);
+        assertThat(server.deliveredPerConnection()).containsExactly(List.of("1", "3"));
+    }
+
+    @Test
+    void reconnectsAfterDroppedConnection() throws Exception {
+        server.dropOnSubject("2");
+        MimeMessage dropped = message("b@neki.vn", "2");
+        List<MimeMessage> messages = List.of(message("a@neki.vn", "1"), dropped, message("c@neki.vn", "3"));
+
+        Map<MimeMessage, Exception> failed = bulkMailSender.send(messages);
+
+        assertThat(failed).containsOnlyKeys(dropped);
+        assertThat(failed.get(dropped)).isInstanceOf(MessagingException.class);
+        assertThat(server.deliveredPerConnection()).containsExactly(List.of("1"), List.of("3"));
+    }
+
+    @Test
+    void failsEveryMessageWhenServerIsUnreachable() throws Exception {
+        server.close();
+        List<MimeMessage> messages = List.of(message("a@neki.vn", "1"), message("b@neki.vn", "2"));
+
+        Map<MimeMessage, Exception> failed = bulkMailSender.send(messages);
+
+        assertThat(failed).containsOnlyKeys(messages);
+    }
+
+    private MimeMessage message(String to, String subject) throws MessagingException {
+        MimeMessage message = new MimeMessage(mailSender.getSession());
+        message.setFrom(new InternetAddress("noreply@neki.vn"));
+        message.setRecipient(MimeMessage.RecipientType.TO, new InternetAddress(to));
+        message.setSubject(subject);
+        message.setText("body");
+        return message;
+    }
+
+    /**
+     * Minimal SMTP server on a loopback socket. Records the subjects delivered on each connection,
+     * rejects configured recipients with 550 and closes the socket instead of acknowledging the
+     * data of a configured subject.
+     */
+    private static final class FakeSmtpServer implements AutoCloseable {
+
+        private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        private final List<List<String>> delivered = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> rejectedRecipients = Collections.synchronizedList(new ArrayList<>());
+        private volatile String dropSubject;
+
+        FakeSmtpServer() throws IOException {
+            Thread acceptor = new Thread(this::acceptLoop, "fake-smtp");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        void rejectRecipient(String address) {
+            rejectedRecipients.add(address);
+        }
+
+        void dropOnSubject(String subject) {
+            dropSubject = subject;
+        }
+
+        List<List<String>> deliveredPerConnection() {
+            synchronized (delivered) {
+                return delivered.stream().filter(subjects -> !subjects.isEmpty()).map(List::copyOf).toList();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+
+        private void acceptLoop() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    List<String> subjects = Collections.synchronizedList(new ArrayList<>());
+                    delivered.add(subjects);
+                    // Connections are served one at a time, in the order they were opened
+                    serve(socket, subjects);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket socket, List<String> subjects) {
+            try (socket;
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                 Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+                reply(out, "220 fake ESMTP");
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.toUpperCase();
+                    if (command.startsWith("EHLO") || command.startsWith("HELO")) {
+                        reply(out, "250 fake");
+                    } else if (command.startsWith("RCPT TO:")) {
+                        boolean rejected = rejectedRecipients.stream().anyMatch(line::contains);
+                        reply(out, rejected ? "550 No such user" : "250 OK");
+                    } else if (command.startsWith("DATA")) {
+                        reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                        String subject = readData(in);
+                        if (subject != null && subject.equals(dropSubject)) {
+                            return;
+                        }
+                        subjects.add(subject);
+                        reply(out, "250 OK");
+                    } else if (command.startsWith("QUIT")) {
+                        reply(out, "221 Bye");
+                        return;
+                    } else {
+                        // MAIL FROM, RSET, NOOP
+                        reply(out, "250 OK");
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away
+            }
+        }
+
+        private static String readData(BufferedReader in) throws IOException {
+            String subject = null;
+            String line;
+            while ((line = in.readLine()) != null && !line.equals(".")) {
+                if (subject == null && line.startsWith("Subject: ")) {
+                    subject = line.substring("Subject: ".length());
+                }
+            }
+            return subject;
+        }
+
+        private static void reply(Writer out, String line) throws IOException {
+            out.write(line + "\r\n");
+            out.flush();
+        }
+    }
+}
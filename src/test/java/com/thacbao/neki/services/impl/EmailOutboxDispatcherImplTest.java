@@ -0,0 +1,221 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.model.EmailOutbox;
+import com.thacbao.neki.repositories.EmailOutboxRepository;
+import com.thacbao.neki.services.BulkMailSender;
+import com.thacbao.neki.services.ExpiredRowPurger;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class EmailOutboxDispatcherImplTest {
+
+    private static final Duration INITIAL = Duration.ofSeconds(30);
+    private static final Duration MAX = Duration.ofHours(1);
+
+    private final EmailOutboxRepository repository = mock(EmailOutboxRepository.class);
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final FakeBulkMailSender bulkMailSender = new FakeBulkMailSender();
+    private EmailOutboxDispatcherImpl dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        EmailTemplateRenderer renderer = new EmailTemplateRenderer();
+        ReflectionTestUtils.setField(renderer, "appName", "NEKI");
+        ReflectionTestUtils.setField(renderer, "appUrl", "https://neki.vn");
+        renderer.compile();
+
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        when(repository.claim(anyInt(), any(), any())).thenReturn(1);
+
+        dispatcher = new EmailOutboxDispatcherImpl(repository, renderer, mailSender, bulkMailSender,
+                mock(PlatformTransactionManager.class), mock(ExpiredRowPurger.class));
+        ReflectionTestUtils.setField(dispatcher, "fromEmail", "shop@neki.vn");
+        ReflectionTestUtils.setField(dispatcher, "workers", 2);
+        ReflectionTestUtils.setField(dispatcher, "batchSize", 100);
+        ReflectionTestUtils.setField(dispatcher, "chunkSize", 20);
+        ReflectionTestUtils.setField(dispatcher, "maxAttempts", 8);
+        ReflectionTestUtils.setField(dispatcher, "initialBackoff", INITIAL);
+        ReflectionTestUtils.setField(dispatcher, "maxBackoff", MAX);
+        ReflectionTestUtils.setField(dispatcher, "claimTimeout", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(dispatcher, "secretExpiry", Duration.ofMinutes(10));
+        dispatcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void doublesPerAttemptStartingFromInitial() {
+        assertThat(EmailOutboxDispatcherImpl.backoff(1, INITIAL, MAX)).isEqualTo(Duration.ofSeconds(30));
+        assertThat(EmailOutboxDispatcherImpl.backoff(2, INITIAL, MAX)).isEqualTo(Duration.ofSeconds(60));
+        assertThat(EmailOutboxDispatcherImpl.backoff(5, INITIAL, MAX)).isEqualTo(Duration.ofMinutes(8));
+    }
+
+    @Test
+    void capsAtMax() {
+        assertThat(EmailOutboxDispatcherImpl.backoff(8, INITIAL, MAX)).isEqualTo(MAX);
+        // The shift is bounded, so very high attempt counts cannot overflow
+        assertThat(EmailOutboxDispatcherImpl.backoff(1_000, INITIAL, MAX)).isEqualTo(MAX);
+    }
+
+    @Test
+    void treatsNonPositiveAttemptsAsFirst() {
+        assertThat(EmailOutboxDispatcherImpl.backoff(0, INITIAL, MAX)).isEqualTo(INITIAL);
+    }
+
+    @Test
+    void sendsClaimedEmailsAndClearsSecretParams() {
+        claim(email(1, "an@neki.vn", EmailOutbox.Template.OTP, 0, LocalDateTime.now()),
+                email(2, "binh@neki.vn", EmailOutbox.Template.WELCOME, 0, LocalDateTime.now()));
+
+        drain();
+
+        assertThat(bulkMailSender.recipients()).containsExactlyInAnyOrder("an@neki.vn", "binh@neki.vn");
+        assertThat(captureIds("markSent")).containsExactlyInAnyOrder(1, 2);
+        assertThat(captureIds("clearParams")).containsExactly(1);
+        verify(repository, never()).markFailed(anyInt(), any(), any(), any());
+    }
+
+    @Test
+    void retriesFailedRecipientWithBackoff() {
+        bulkMailSender.failing.add("binh@neki.vn");
+        claim(email(1, "an@neki.vn", EmailOutbox.Template.WELCOME, 0, LocalDateTime.now()),
+                email(2, "binh@neki.vn", EmailOutbox.Template.WELCOME, 2, LocalDateTime.now()));
+
+        LocalDateTime before = LocalDateTime.now();
+        drain();
+
+        assertThat(captureIds("markSent")).containsExactly(1);
+        ArgumentCaptor<LocalDateTime> nextAttemptAt = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(repository).markFailed(eq(2), eq(EmailOutbox.Status.PENDING), nextAttemptAt.capture(), eq("mailbox unavailable"));
+        // Third attempt: initial doubled twice
+        assertThat(nextAttemptAt.getValue()).isAfterOrEqualTo(before.plus(Duration.ofMinutes(2)));
+        verify(repository, never()).clearParams(any());
+    }
+
+    @Test
+    void givesUpOnLastAttempt() {
+        bulkMailSender.failing.add("an@neki.vn");
+        claim(email(1, "an@neki.vn", EmailOutbox.Template.PASSWORD_RESET, 7, LocalDateTime.now()));
+
+        drain();
+
+        verify(repository).markFailed(eq(1), eq(EmailOutbox.Status.FAILED), any(), eq("mailbox unavailable"));
+        assertThat(captureIds("clearParams")).containsExactly(1);
+        verify(repository, never()).markSent(any(), any());
+    }
+
+    @Test
+    void doesNotSendExpiredOtp() {
+        claim(email(1, "an@neki.vn", EmailOutbox.Template.OTP, 0, LocalDateTime.now().minusMinutes(11)),
+                email(2, "binh@neki.vn", EmailOutbox.Template.ORDER_CONFIRMATION, 0, LocalDateTime.now().minusHours(2)));
+
+        drain();
+
+        assertThat(bulkMailSender.recipients()).containsExactly("binh@neki.vn");
+        verify(repository).markFailed(eq(1), eq(EmailOutbox.Status.FAILED), any(), eq("Expired before it could be sent"));
+        assertThat(captureIds("clearParams")).containsExactly(1);
+        assertThat(captureIds("markSent")).containsExactly(2);
+    }
+
+    @Test
+    void givesUpOnOtpWhoseRetryWouldBeTooLate() {
+        bulkMailSender.failing.add("an@neki.vn");
+        // Fifth attempt backs off 8 minutes, past the 10 minute expiry
+        claim(email(1, "an@neki.vn", EmailOutbox.Template.OTP, 4, LocalDateTime.now().minusMinutes(5)));
+
+        drain();
+
+        verify(repository).markFailed(eq(1), eq(EmailOutbox.Status.FAILED), any(), eq("mailbox unavailable"));
+        assertThat(captureIds("clearParams")).containsExactly(1);
+    }
+
+    // Helper methods
+    private void claim(EmailOutbox... emails) {
+        List<Integer> ids = Arrays.stream(emails).map(EmailOutbox::getId).toList();
+        when(repository.findDueIds(any(LocalDateTime.class), any(Pageable.class))).thenReturn(ids);
+        when(repository.findAllById(ids)).thenReturn(List.of(emails));
+    }
+
+    private void drain() {
+        ReflectionTestUtils.invokeMethod(dispatcher, "drain");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Integer> captureIds(String method) {
+        ArgumentCaptor<Collection<Integer>> ids = ArgumentCaptor.forClass(Collection.class);
+        if ("markSent".equals(method)) {
+            verify(repository).markSent(ids.capture(), any());
+        } else {
+            verify(repository).clearParams(ids.capture());
+        }
+        return new ArrayList<>(ids.getValue());
+    }
+
+    private static EmailOutbox email(int id, String recipient, EmailOutbox.Template template, int attempts, LocalDateTime createdAt) {
+        EmailOutbox email = EmailOutbox.builder()
+                .recipient(recipient)
+                .template(template)
+                .params(new HashMap<>(Map.of("otp", "123456", "fullName", "Nguyễn An", "orderNumber", "DH001")))
+                .attempts(attempts)
+                .nextAttemptAt(createdAt)
+                .build();
+        email.setId(id);
+        email.setCreatedAt(createdAt);
+        return email;
+    }
+
+    /**
+     * Records what it was asked to send and fails the messages addressed to a failing recipient
+     */
+    private static class FakeBulkMailSender implements BulkMailSender {
+
+        private final Set<String> failing = new HashSet<>();
+        private final List<MimeMessage> sent = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public Map<MimeMessage, Exception> send(List<MimeMessage> messages) {
+            Map<MimeMessage, Exception> failed = new IdentityHashMap<>();
+            for (MimeMessage message : messages) {
+                if (failing.contains(recipientOf(message))) {
+                    failed.put(message, new IllegalStateException("mailbox unavailable"));
+                } else {
+                    sent.add(message);
+                }
+            }
+            return failed;
+        }
+
+        private List<String> recipients() {
+            synchronized (sent) {
+                return sent.stream().map(FakeBulkMailSender::recipientOf).toList();
+            }
+        }
+
+        private static String recipientOf(MimeMessage message) {
+            try {
+                return message.getAllRecipients()[0].toString();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
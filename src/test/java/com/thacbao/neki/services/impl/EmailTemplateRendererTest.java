@@ -0,0 +1,59 @@
+package com.thacbao.neki.services.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmailTemplateRendererTest {
+
+    @Test
+    void foldsConstantsAndFillsSlots() {
+        EmailTemplateRenderer.CompiledTemplate template = EmailTemplateRenderer.CompiledTemplate.compile(
+                "<h1>{{appName}}</h1><p>Mã OTP: {{otp}}</p><a href=\"{{appUrl}}\">{{appName}}</a>",
+                Map.of("appName", "NEKI", "appUrl", "https://neki.vn"));
+
+        byte[] html = template.render(slot -> "otp".equals(slot) ? "123456" : null);
+
+        assertThat(new String(html, StandardCharsets.UTF_8))
+                .isEqualTo("<h1>NEKI</h1><p>Mã OTP: 123456</p><a href=\"https://neki.vn\">NEKI</a>");
+    }
+
+    @Test
+    void rendersSlotsAtEdgesAndMissingValuesAsEmpty() {
+        EmailTemplateRenderer.CompiledTemplate template = EmailTemplateRenderer.CompiledTemplate.compile(
+                "{{first}} và {{second}}", Map.of());
+
+        assertThat(new String(template.render(slot -> "first".equals(slot) ? "Nguyễn" : null), StandardCharsets.UTF_8))
+                .isEqualTo("Nguyễn và ");
+    }
+
+    @Test
+    void rendersTemplateWithoutSlotsAsIs() {
+        EmailTemplateRenderer.CompiledTemplate template = EmailTemplateRenderer.CompiledTemplate.compile(
+                "<p>Xin chào</p>", Map.of());
+
+        assertThat(new String(template.render(slot -> "x"), StandardCharsets.UTF_8)).isEqualTo("<p>Xin chào</p>");
+    }
+
+    @Test
+    void doesNotShareRenderedBytesBetweenCalls() {
+        EmailTemplateRenderer.CompiledTemplate template = EmailTemplateRenderer.CompiledTemplate.compile(
+                "OTP {{otp}}", Map.of());
+
+        byte[] first = template.render(slot -> "111111");
+        byte[] second = template.render(slot -> "2");
+
+        assertThat(new String(first, StandardCharsets.UTF_8)).isEqualTo("OTP 111111");
+        assertThat(new String(second, StandardCharsets.UTF_8)).isEqualTo("OTP 2");
+    }
+
+    @Test
+    void rejectsUnclosedSlot() {
+        assertThatThrownBy(() -> EmailTemplateRenderer.CompiledTemplate.compile("Hi {{name", Map.of()))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
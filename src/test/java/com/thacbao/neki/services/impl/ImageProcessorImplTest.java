@@ -0,0 +1,238 @@
+package com.thacbao.neki.services.impl;
+
+import com.thacbao.neki.exceptions.common.InvalidException;
+import com.thacbao.neki.services.ImageProcessor.Format;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageProcessorImplTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ImageProcessorImpl processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new ImageProcessorImpl();
+        ReflectionTestUtils.setField(processor, "maxDimension", 32);
+        ReflectionTestUtils.setField(processor, "maxPixels", 10_000_000L);
+        ReflectionTestUtils.setField(processor, "jpegQuality", 0.85f);
+        ReflectionTestUtils.setField(processor, "threads", 1);
+        ReflectionTestUtils.setField(processor, "queueSize", 4);
+        processor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @Test
+    void detectsFormatFromMagicBytes() throws IOException {
+        assertThat(detect(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0})).isEqualTo(Format.JPEG);
+        assertThat(detect(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})).isEqualTo(Format.PNG);
+        assertThat(detect(webp())).isEqualTo(Format.WEBP);
+
+        assertThat(detect("RIFF\0\0\0\0WAVE".getBytes(StandardCharsets.US_ASCII))).isNull();
+        assertThat(detect("GIF89a".getBytes(StandardCharsets.US_ASCII))).isNull();
+        assertThat(detect(new byte[]{(byte) 0xFF, (byte) 0xD8})).isNull();
+        assertThat(detect(new byte[0])).isNull();
+    }
+
+    @Test
+    void readsExifOrientationInBothByteOrders() throws IOException {
+        assertThat(ImageProcessorImpl.exifOrientation(write(jpegWithExif(tiff(true, 6))))).isEqualTo(6);
+        assertThat(ImageProcessorImpl.exifOrientation(write(jpegWithExif(tiff(false, 8))))).isEqualTo(8);
+        assertThat(ImageProcessorImpl.tiffOrientation(tiff(false, 3), 0)).isEqualTo(3);
+    }
+
+    @Test
+    void defaultsOrientationWhenAbsentOrUnreadable() throws IOException {
+        assertThat(ImageProcessorImpl.exifOrientation(write(jpeg(8, 4)))).isEqualTo(1);
+        assertThat(ImageProcessorImpl.exifOrientation(write("not a jpeg".getBytes(StandardCharsets.US_ASCII)))).isEqualTo(1);
+        // APP1 segment cut short
+        assertThat(ImageProcessorImpl.exifOrientation(write(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE1, 0x00, 0x40, 'E'})))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void orientationTransformMapsStoredCornersToDisplay() {
+        // A 4x2 stored image shown on a 2x4 canvas for the rotated orientations
+        assertThat(map(ImageProcessorImpl.orientationTransform(1, 4, 2), 0, 0)).isEqualTo(new Point2D.Double(0, 0));
+        assertThat(map(ImageProcessorImpl.orientationTransform(3, 4, 2), 0, 0)).isEqualTo(new Point2D.Double(4, 2));
+        assertThat(map(ImageProcessorImpl.orientationTransform(6, 2, 4), 0, 0)).isEqualTo(new Point2D.Double(2, 0));
+        assertThat(map(ImageProcessorImpl.orientationTransform(6, 2, 4), 4, 0)).isEqualTo(new Point2D.Double(2, 4));
+        assertThat(map(ImageProcessorImpl.orientationTransform(8, 2, 4), 0, 0)).isEqualTo(new Point2D.Double(0, 4));
+    }
+
+    @Test
+    void startsWithChecksBounds() {
+        byte[] data = "RIFF1234WEBP".getBytes(StandardCharsets.US_ASCII);
+
+        assertThat(ImageProcessorImpl.startsWith(data, 8, "WEBP".getBytes(StandardCharsets.US_ASCII))).isTrue();
+        assertThat(ImageProcessorImpl.startsWith(data, 10, "WEBP".getBytes(StandardCharsets.US_ASCII))).isFalse();
+        assertThat(ImageProcessorImpl.startsWith(data, 0, "RIFX".getBytes(StandardCharsets.US_ASCII))).isFalse();
+    }
+
+    @Test
+    void appliesOrientationAndDownscalesJpeg() throws IOException {
+        Path output = processor.process(write(jpegWithExif(tiff(true, 6))), Format.JPEG);
+
+        BufferedImage image = ImageIO.read(output.toFile());
+        assertThat(image.getWidth()).isEqualTo(16);
+        assertThat(image.getHeight()).isEqualTo(32);
+        assertThat(ImageProcessorImpl.exifOrientation(output)).isEqualTo(1);
+        Files.delete(output);
+    }
+
+    @Test
+    void reencodesSmallPng() throws IOException {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB), "png", png);
+        Path source = write(png.toByteArray());
+
+        Path output = processor.process(source, Format.PNG);
+
+        assertThat(output).isNotEqualTo(source);
+        assertThat(ImageIO.read(output.toFile()).getWidth()).isEqualTo(8);
+        Files.delete(output);
+    }
+
+    @Test
+    void refusesUndecodableImage() throws IOException {
+        Path source = write(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, 0x00, 0x01, 0x02});
+
+        assertThatThrownBy(() -> processor.process(source, Format.JPEG)).isInstanceOf(InvalidException.class);
+    }
+
+    @Test
+    void stripsWebpMetadataChunks() {
+        byte[] stripped = ImageProcessorImpl.stripWebpMetadata(webp());
+
+        // VP8X with its metadata flags cleared, then the image data; EXIF and XMP are gone
+        byte[] expected = riff(
+                chunk("VP8X", new byte[]{0x10, 0, 0, 0, 0, 0, 0, 0, 0, 0}),
+                chunk("VP8L", new byte[]{1, 2, 3}));
+        assertThat(stripped).isEqualTo(expected);
+    }
+
+    @Test
+    void refusesTruncatedWebp() {
+        byte[] webp = webp();
+        byte[] truncated = Arrays.copyOf(webp, webp.length - 4);
+
+        assertThatThrownBy(() -> ImageProcessorImpl.stripWebpMetadata(truncated)).isInstanceOf(InvalidException.class);
+    }
+
+    // Helper methods
+    private Format detect(byte[] data) throws IOException {
+        return processor.detect(new ByteArrayInputStream(data));
+    }
+
+    private Path write(byte[] data) throws IOException {
+        return Files.write(Files.createTempFile(tempDir, "image-", ".bin"), data);
+    }
+
+    private static Point2D map(AffineTransform transform, double x, double y) {
+        return transform.transform(new Point2D.Double(x, y), null);
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpeg", out);
+        return out.toByteArray();
+    }
+
+    // A 64x32 JPEG with an APP1 EXIF segment right after SOI
+    private static byte[] jpegWithExif(byte[] tiff) throws IOException {
+        byte[] jpeg = jpeg(64, 32);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        int length = 2 + 6 + tiff.length;
+        out.write(new byte[]{(byte) 0xFF, (byte) 0xE1, (byte) (length >> 8), (byte) length});
+        out.writeBytes("Exif\0\0".getBytes(StandardCharsets.US_ASCII));
+        out.writeBytes(tiff);
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    // TIFF header and a single IFD holding only the orientation tag
+    private static byte[] tiff(boolean littleEndian, int orientation) {
+        byte[] data = new byte[8 + 2 + 12 + 4];
+        data[0] = data[1] = (byte) (littleEndian ? 'I' : 'M');
+        put16(data, 2, 42, littleEndian);
+        put32(data, 4, 8, littleEndian);
+        put16(data, 8, 1, littleEndian);
+        put16(data, 10, 0x0112, littleEndian);
+        put16(data, 12, 3, littleEndian);
+        put32(data, 14, 1, littleEndian);
+        put16(data, 18, orientation, littleEndian);
+        return data;
+    }
+
+    private static void put16(byte[] data, int offset, int value, boolean littleEndian) {
+        data[offset + (littleEndian ? 0 : 1)] = (byte) value;
+        data[offset + (littleEndian ? 1 : 0)] = (byte) (value >> 8);
+    }
+
+    private static void put32(byte[] data, int offset, int value, boolean littleEndian) {
+        put16(data, offset + (littleEndian ? 0 : 2), value & 0xFFFF, littleEndian);
+        put16(data, offset + (littleEndian ? 2 : 0), value >>> 16, littleEndian);
+    }
+
+    // Extended WebP: VP8X announcing EXIF and XMP, odd-sized image data with its pad byte, then the metadata
+    private static byte[] webp() {
+        return riff(
+                chunk("VP8X", new byte[]{0x10 | 0x08 | 0x04, 0, 0, 0, 0, 0, 0, 0, 0, 0}),
+                chunk("VP8L", new byte[]{1, 2, 3}),
+                chunk("EXIF", new byte[]{'I', 'I', 42, 0}),
+                chunk("XMP ", "<x:xmpmeta/>".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static byte[] chunk(String fourCc, byte[] payload) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(fourCc.getBytes(StandardCharsets.US_ASCII));
+        byte[] size = new byte[4];
+        put32(size, 0, payload.length, true);
+        out.writeBytes(size);
+        out.writeBytes(payload);
+        if (payload.length % 2 == 1) {
+            out.write(0);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] riff(byte[]... chunks) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.writeBytes("WEBP".getBytes(StandardCharsets.US_ASCII));
+        for (byte[] chunk : chunks) {
+            body.writeBytes(chunk);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes("RIFF".getBytes(StandardCharsets.US_ASCII));
+        byte[] size = new byte[4];
+        put32(size, 0, body.size(), true);
+        out.writeBytes(size);
+        out.writeBytes(body.toByteArray());
+        return out.toByteArray();
+    }
+}